@@ -0,0 +1,181 @@
+// the syntax tree LalrParser builds, held flat in parallel int arrays instead of one object per node:
+// the kind of every node, the token it was made from, its first child and the sibling after it. 16 bytes a node.
+// nodes are numbered in the order they were made, so children always come before their parent and root is last.
+// a token is an index into tokens, which holds only the tokens some node refers to.
+public class Ast
+{
+    public static final int PROGRAM   = 0;     // the functions and global variables
+    public static final int FUNCTION  = 1;     // token the name, children PARAMS, the TYPE returned if any, BLOCK
+    public static final int PARAMS    = 2;
+    public static final int PARAM     = 3;     // token the name, child its TYPE
+    public static final int TYPE      = 4;     // token int or void
+    public static final int BLOCK     = 5;     // the statements
+    public static final int VARIABLE  = 6;     // token the name, child its TYPE
+    public static final int ASSIGN    = 7;     // token the name, child the value
+    public static final int PRINT     = 8;     // child the value
+    public static final int IF        = 9;     // children the condition, the statement and the one after else if any
+    public static final int WHILE     = 10;    // children the condition and the statement
+    public static final int CALL      = 11;    // token the name, child ARGS
+    public static final int ARGS      = 12;
+    public static final int BINARY    = 13;    // token the operator, children both operands
+    public static final int NAME      = 14;    // token the identifier
+    public static final int NUMBER    = 15;    // token the number
+
+    static final String[] NAMES = {"PROGRAM", "FUNCTION", "PARAMS", "PARAM", "TYPE", "BLOCK", "VARIABLE", "ASSIGN", "PRINT",
+                                   "IF", "WHILE", "CALL", "ARGS", "BINARY", "NAME", "NUMBER"};
+
+    int[] kinds;
+    int[] tokens;
+    int[] children;     // first child, -1 for none
+    int[] siblings;     // next child of the same parent, -1 for the last
+    int   count    = 0;
+
+    public final TokenBuffer source;    // the tokens the nodes refer to
+    public int root = -1;
+
+    public Ast(TokenBuffer source)
+    {
+        this(source, 256);
+    }
+
+    public Ast(TokenBuffer source, int capacity)
+    {
+        capacity = Math.max(16, capacity);
+        this.source = source;
+        kinds    = new int[capacity];
+        tokens   = new int[capacity];
+        children = new int[capacity];
+        siblings = new int[capacity];
+    }
+
+    // a node without children yet, token -1 for none.
+    int add(int kind, int token)
+    {
+        if (count == kinds.length)
+        {
+            int n = count + (count >> 1);
+            kinds    = java.util.Arrays.copyOf(kinds, n);
+            tokens   = java.util.Arrays.copyOf(tokens, n);
+            children = java.util.Arrays.copyOf(children, n);
+            siblings = java.util.Arrays.copyOf(siblings, n);
+        }
+        kinds[count]    = kind;
+        tokens[count]   = token;
+        children[count] = -1;
+        siblings[count] = -1;
+        return count++;
+    }
+
+    // make child the next child of node after last, its last child so far (-1 for none). returns child.
+    int append(int node, int last, int child)
+    {
+        if (last < 0)
+            children[node] = child;
+        else
+            siblings[last] = child;
+        return child;
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    public int kind(int node)
+    {
+        return kinds[node];
+    }
+
+    public int token(int node)
+    {
+        return tokens[node];
+    }
+
+    public int firstChild(int node)
+    {
+        return children[node];
+    }
+
+    public int nextSibling(int node)
+    {
+        return siblings[node];
+    }
+
+    public int childCount(int node)
+    {
+        int n = 0;
+        for (int c = children[node]; c >= 0; c = siblings[c])
+            n++;
+        return n;
+    }
+
+    // the lexeme of the token of a node, null for a node without one.
+    public CharSequence lexeme(int node)
+    {
+        return tokens[node] < 0 ? null : source.lexeme(tokens[node]);
+    }
+
+    public static String name(int kind)
+    {
+        return NAMES[kind];
+    }
+
+    // the tree under root, a node a line as KIND lexeme line:column, children indented below their parent.
+    // the nodes still to print are kept on a stack of node, depth pairs instead of the call stack, a long expression or
+    // deeply nested statements make a tree deeper than the threads have stack for. after a node come its first child,
+    // then its next sibling, so the stack holds one node for every level above the one printed.
+    public void print(Appendable out) throws java.io.IOException
+    {
+        if (root < 0)
+            return;
+        int[] stack = new int[32];
+        int top = 0;
+        stack[top++] = root;
+        stack[top++] = 0;
+        while (top > 0)
+        {
+            int depth = stack[--top];
+            int node  = stack[--top];
+            for (int i = 0; i < depth; i++)
+                out.append("  ");
+            out.append(NAMES[kinds[node]]);
+            int token = tokens[node];
+            if (token >= 0)
+                out.append(' ').append(source.lexeme(token)).append(' ').append(Integer.toString(source.line(token))).append(':').append(Integer.toString(source.column(token)));
+            out.append(System.lineSeparator());
+            if (top + 4 > stack.length)
+                stack = java.util.Arrays.copyOf(stack, 2 * stack.length);
+            if (depth > 0 && siblings[node] >= 0)
+            {
+                stack[top++] = siblings[node];
+                stack[top++] = depth;
+            }
+            if (children[node] >= 0)
+            {
+                stack[top++] = children[node];
+                stack[top++] = depth + 1;
+            }
+        }
+    }
+
+    // approximate heap size of the tree, arrays and their headers included. the tokens are not counted.
+    public long footprintBytes()
+    {
+        final int header = 16;
+        return header + 4 + 4 + 2 * 8 + 4 * (header + 4L * kinds.length);
+    }
+
+    public String toString()
+    {
+        StringBuilder b = new StringBuilder();
+        try
+        {
+            print(b);
+        }
+        catch (java.io.IOException e)
+        {
+            throw new IllegalStateException(e);     // a StringBuilder does not throw
+        }
+        return b.toString();
+    }
+}
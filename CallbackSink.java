@@ -0,0 +1,37 @@
+// hands every token to a callback, for consumers in the same process.
+public class CallbackSink implements TokenSink
+{
+    public interface Callback
+    {
+        void token(int kind, CharSequence lexeme, int line, int column) throws Exception;
+    }
+
+    public interface EndCallback
+    {
+        void end(int status, int line, int column) throws Exception;
+    }
+
+    final Callback    onToken;
+    final EndCallback onEnd;
+
+    public CallbackSink(Callback onToken)
+    {
+        this(onToken, (status, line, column) -> { });
+    }
+
+    public CallbackSink(Callback onToken, EndCallback onEnd)
+    {
+        this.onToken = onToken;
+        this.onEnd   = onEnd;
+    }
+
+    public void token(int kind, CharSequence lexeme, int line, int column) throws Exception
+    {
+        onToken.token(kind, lexeme, line, column);
+    }
+
+    public void end(int status, int line, int column) throws Exception
+    {
+        onEnd.end(status, line, column);
+    }
+}
@@ -0,0 +1,91 @@
+// reads a ReadableByteChannel as UTF-8 through one fixed buffer, so stdin or a pipe can be lexed as it arrives.
+// read() returns whatever the channel has delivered so far instead of waiting for a full block, and before it has
+// to wait on the channel it flushes the sink, so the tokens of the input read so far go out first.
+public class ChannelReader extends java.io.Reader
+{
+    final java.nio.channels.ReadableByteChannel in;
+    final TokenSink                             waiting;    // flushed before every read from the channel, may be null
+    final java.nio.ByteBuffer                   bytes;
+    final java.nio.charset.CharsetDecoder       decoder = java.nio.charset.StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(java.nio.charset.CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(java.nio.charset.CodingErrorAction.REPLACE);
+    final java.nio.CharBuffer                   pending = java.nio.CharBuffer.allocate(2);  // a pair a read of one char split
+    boolean                                     endOfInput; // the channel has returned -1
+    boolean                                     flushed;    // and the decoder has put out all it had, read() returns -1
+
+    public ChannelReader(java.nio.channels.ReadableByteChannel in, TokenSink waiting)
+    {
+        this(in, waiting, 1 << 16);
+    }
+
+    public ChannelReader(java.nio.channels.ReadableByteChannel in, TokenSink waiting, int bufferSize)
+    {
+        this.in      = in;
+        this.waiting = waiting;
+        this.bytes   = java.nio.ByteBuffer.allocate(bufferSize);
+        bytes.flip();   // empty, and ready to be decoded from
+        pending.flip();
+    }
+
+    public int read(char[] buffer, int offset, int length) throws java.io.IOException
+    {
+        if (length == 0)
+            return 0;
+        if (!pending.hasRemaining() && length < 2)
+        {
+            // a surrogate pair would not fit, and the decoder puts out both of its chars or none
+            pending.clear();
+            int n = decode(pending);
+            pending.flip();
+            if (n < 0)
+                return -1;
+        }
+        if (pending.hasRemaining())
+        {
+            int n = Math.min(length, pending.remaining());
+            pending.get(buffer, offset, n);
+            return n;
+        }
+        return decode(java.nio.CharBuffer.wrap(buffer, offset, length));
+    }
+
+    // decode into out, which has room for two chars, waiting on the channel until there is at least one.
+    // returns the number of chars, or -1 once the end of the input has been decoded and flushed.
+    int decode(java.nio.CharBuffer out) throws java.io.IOException
+    {
+        int start = out.position();
+        while (!flushed)
+        {
+            // the decoder takes no more input after the flush, and the flush comes when the last input is decoded
+            if (decoder.decode(bytes, out, endOfInput).isUnderflow() && endOfInput)
+                flushed = decoder.flush(out).isUnderflow();
+            if (out.position() > start)
+                return out.position() - start;
+            if (endOfInput)
+                continue;
+            bytes.compact();
+            try
+            {
+                if (waiting != null)
+                    waiting.flush();
+            }
+            catch (java.io.IOException e)
+            {
+                throw e;
+            }
+            catch (Exception e)
+            {
+                throw new java.io.IOException(e);
+            }
+            if (in.read(bytes) < 0)
+                endOfInput = true;
+            bytes.flip();
+        }
+        return -1;
+    }
+
+    public void close() throws java.io.IOException
+    {
+        in.close();
+    }
+}
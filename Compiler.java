@@ -1,13 +1,49 @@
 public class Compiler
 {
     Parser _parser;
+    LexerMetrics _metrics;
 
     public Compiler(java.io.Reader r) throws Exception
     {
         _parser = new Parser(r, this);
     }
-    public void Compile() throws Exception
+    public Compiler(java.nio.file.Path path) throws Exception
     {
-        _parser.yyparse();
+        _parser = new Parser(path, this);
+    }
+    public Compiler(Lexer lexer) throws Exception
+    {
+        _parser = new Parser(lexer, this);
+    }
+    // returns 0 on success and -1 on a lexical error, like yyparse().
+    public int Compile() throws Exception
+    {
+        if (!LexerMetrics.ENABLED)
+            return _parser.yyparse();
+        long start = System.nanoTime();
+        int status = _parser.yyparse();
+        _metrics = LexerMetrics.of(_parser.lexer, status, System.nanoTime() - start);
+        LexerMetrics.total.add(_metrics);
+        return status;
+    }
+    public int Compile(TokenSink sink) throws Exception
+    {
+        _parser.sink = sink;
+        return Compile();
+    }
+    // counters of the last Compile(), null unless the JVM runs with -Dminc.metrics=true.
+    public LexerMetrics Metrics()
+    {
+        return _metrics;
+    }
+    // counters of every Compile() in this JVM, also registered over JMX as minc:type=LexerMetrics.
+    public static LexerMetrics TotalMetrics()
+    {
+        return LexerMetrics.total;
+    }
+    // identifiers interned while lexing, by symbol id.
+    public SymbolTable Symbols()
+    {
+        return _parser.lexer.symbols;
     }
 }
@@ -0,0 +1,323 @@
+// compiles many files concurrently. each file is compiled into its own buffer, and the buffers are written out
+// in the order the files were given, so the output of a file is never interleaved with another one.
+public class Driver
+{
+    public int     threads = Runtime.getRuntime().availableProcessors();
+    public boolean virtual = false;     // one virtual thread per file instead of a pool of threads
+    public boolean table   = false;     // TableLexer instead of Lexer
+    public boolean mapped  = true;      // map the files instead of reading them through a FileReader
+    public boolean summary = false;     // totals to stderr
+    public String  sink    = "text";    // text prints the tokens, null drops them, binary writes them to file.tok
+    public TokenCache cache = null;     // replay unchanged files from here instead of lexing them
+    public int     maxErrors = 0;       // above 0, report up to this many lexical errors a file instead of stopping at the first
+    public boolean ast     = false;     // parse with LalrParser and print the syntax tree instead of the tokens
+    public int     pipeline = -1;       // a TokenRing wait strategy: lex mapped files of PIPELINE_SIZE and more ahead of the parser
+    public boolean offsets = false;     // with ast, OffsetLexer: positions are only worked out for an error
+    public boolean parallel = false;    // lex mapped files of PARALLEL_SIZE and more in chunks with a ParallelLexer
+    long           mapSize = MAP_SIZE;  // files smaller than this are read instead of mapped, bench/Check maps them all
+
+    static final long PIPELINE_SIZE = 1 << 20;  // a smaller file is lexed before a thread would have started
+    static final long MAP_SIZE = Lexer.DEFAULT_BLOCK_SIZE;  // a smaller file is read instead of mapped, see lexer()
+    static final long PARALLEL_SIZE = 2L * ParallelLexer.DEFAULT_CHUNK_SIZE;   // a smaller file is a single chunk
+
+    // what compiling one file produced.
+    static class Result
+    {
+        byte[] output;
+        int    status;  // 0 success, -1 lexical error (or syntax error with ast), 1 the file could not be read
+        boolean syntaxError;    // with ast, status -1 is a syntax error
+        long   bytes;
+    }
+
+    // compile the files and write their output to out in order. returns the number of files that did not compile.
+    // a single file is compiled on the calling thread, starting a pool would take longer than lexing a small file.
+    public int run(java.util.List<java.nio.file.Path> files, java.io.PrintStream out) throws Exception
+    {
+        long start = System.nanoTime();
+        java.util.concurrent.ExecutorService pool = files.size() > 1 ? pool() : null;
+        int failed = 0, errors = 0, syntaxErrors = 0, unreadable = 0;
+        long bytes = 0;
+        try
+        {
+            java.util.List<java.util.concurrent.Future<Result>> results = new java.util.ArrayList<>();
+            if (pool != null)
+            {
+                for (java.nio.file.Path file : files)
+                    results.add(pool.submit(() -> compile(file)));
+            }
+            for (int i = 0; i < files.size(); i++)
+            {
+                Result r = pool != null ? results.get(i).get() : compile(files.get(i));
+                out.write(r.output);
+                bytes += r.bytes;
+                if (r.status != 0)
+                    failed++;
+                if (r.status < 0 && r.syntaxError)
+                    syntaxErrors++;
+                else if (r.status < 0)
+                    errors++;
+                if (r.status > 0)
+                    unreadable++;
+            }
+            out.flush();
+        }
+        finally
+        {
+            if (pool != null)
+                pool.shutdown();
+        }
+        if (summary)
+        {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf("%d files, %d compiled, %d with lexical errors, %s%d unreadable, %d bytes in %.3f s (%.1f MB/s)%n",
+                              files.size(), files.size() - failed, errors, ast ? syntaxErrors + " with syntax errors, " : "",
+                              unreadable, bytes, seconds, bytes / 1e6 / seconds);
+            if (cache != null)
+                System.err.println(cache);
+            if (LexerMetrics.ENABLED)
+                System.err.println(LexerMetrics.total);
+        }
+        return failed;
+    }
+
+    Result compile(java.nio.file.Path file)
+    {
+        Result r = new Result();
+        java.io.ByteArrayOutputStream buffer = new java.io.ByteArrayOutputStream();
+        java.io.PrintStream out = new java.io.PrintStream(buffer);
+        try
+        {
+            r.bytes = java.nio.file.Files.size(file);
+            if (file.toString().endsWith(".tok"))
+            {
+                // written by --sink binary, replay it instead of lexing
+                try (TokenReader reader = new TokenReader(file))
+                {
+                    r.status = LexerMetrics.replay(reader.sourceLength, new TextSink(out), reader::replay);
+                }
+                out.println();
+                out.flush();
+                r.output = buffer.toByteArray();
+                return r;
+            }
+            if (ast)
+            {
+                r.status = parse(file, out, r);
+                out.println();
+                out.flush();
+                r.output = buffer.toByteArray();
+                return r;
+            }
+            java.io.OutputStream tok = null;
+            TokenSink sink;
+            switch (this.sink)
+            {
+                case "null"   : sink = new NullSink(); break;
+                case "binary" :
+                    tok = new java.io.FileOutputStream(file + ".tok");
+                    sink = new TokenWriter(tok, r.bytes, TokenWriter.hash(file));
+                    break;
+                default       : sink = new TextSink(out);
+            }
+            try
+            {
+                if (cache != null && tok == null && maxErrors == 0)    // the cache keeps the first error only
+                    r.status = cache.compile(file, sink, table);
+                else if (parallel && mapped && maxErrors == 0 && r.bytes >= PARALLEL_SIZE)     // and so does a ParallelLexer
+                {
+                    r.status = LexerMetrics.replay(r.bytes, sink, s -> {
+                        ParallelLexer lexer = new ParallelLexer(file);
+                        lexer.table = table;
+                        lexer.lex();
+                        return lexer.tokens().replay(s);
+                    });
+                }
+                else
+                {
+                    Lexer lexer = pipelined(lexer(file), r.bytes);
+                    try
+                    {
+                        r.status = new Compiler(lexer).Compile(sink);
+                    }
+                    finally
+                    {
+                        if (lexer instanceof PipelinedLexer)
+                            ((PipelinedLexer)lexer).close();
+                    }
+                }
+            }
+            finally
+            {
+                if (tok != null)
+                    tok.close();
+            }
+            if (sink instanceof TextSink)
+                out.println();
+        }
+        catch (Exception e)
+        {
+            out.println(file + ": " + e);
+            out.println();
+            r.status = 1;
+        }
+        out.flush();
+        r.output = buffer.toByteArray();
+        return r;
+    }
+
+    // parse a file into an Ast and print the tree, or where parsing stopped. r learns whether that was a syntax error.
+    int parse(java.nio.file.Path file, java.io.PrintStream out, Result r) throws Exception
+    {
+        LalrParser parser;
+        long size = java.nio.file.Files.size(file);
+        if (mapped && size >= mapSize)
+        {
+            Lexer lexer = offsets ? new OffsetLexer(file, null) : pipelined(table ? new TableLexer(file, null) : new Lexer(file, null), size);
+            parser = new LalrParser(lexer, (int)Math.min(Integer.MAX_VALUE, size / 8));
+        }
+        else
+        {
+            String text = new String(java.nio.file.Files.readAllBytes(file), java.nio.charset.StandardCharsets.UTF_8);
+            parser = offsets ? new LalrParser(new OffsetLexer(new TextReader(text, 0), null), text.length() / 8) : new LalrParser(text, table);
+            parser.tokens.text = text;
+        }
+        long start = System.nanoTime();
+        int status;
+        try
+        {
+            status = parser.parse();
+        }
+        finally
+        {
+            if (parser.lexer instanceof PipelinedLexer)
+                ((PipelinedLexer)parser.lexer).close();     // a syntax error stops parsing before the end
+        }
+        r.syntaxError = parser.syntaxError;
+        if (LexerMetrics.ENABLED)   // a syntax error is not one of the lexer's
+            LexerMetrics.record(parser.lexer, parser.syntaxError ? 0 : status, System.nanoTime() - start);
+        if (status == 0)
+        {
+            parser.ast.print(out);
+            out.println("Success!");
+        }
+        else if (parser.syntaxError)
+            out.println("Error! There is a syntax error at " + parser.lineno + ":" + parser.column + ", unexpected " + LalrParser.terminalName(parser.unexpected) + ".");
+        else
+            out.println("Error! There is a lexical error at " + parser.lineno + ":" + parser.column + ".");
+        return status;
+    }
+
+    // the lexer on a thread of its own, running ahead of the parser, when pipeline is set and the file is large. on a
+    // single processor the two threads only take turns, see bench/PipelineBench.
+    Lexer pipelined(Lexer lexer, long size)
+    {
+        if (pipeline < 0 || lexer.mapped == null || size < PIPELINE_SIZE || Runtime.getRuntime().availableProcessors() < 2)
+            return lexer;
+        return new PipelinedLexer(lexer, null, new TokenRing(PipelinedLexer.DEFAULT_CAPACITY, PipelinedLexer.DEFAULT_BATCH, pipeline));
+    }
+
+    // a file smaller than a block is read into a block of its own size instead: for a file that small, mapping it
+    // costs more than the whole read, and a block of the default size would be mostly empty.
+    Lexer lexer(java.nio.file.Path file) throws Exception
+    {
+        Lexer lexer;
+        if (mapped && java.nio.file.Files.size(file) < mapSize)
+        {
+            String text = new String(java.nio.file.Files.readAllBytes(file), java.nio.charset.StandardCharsets.UTF_8);
+            int block = Math.max(1, text.length());
+            lexer = table ? new TableLexer(new TextReader(text, 0), null, block) : new Lexer(new TextReader(text, 0), null, block);
+        }
+        else if (table)
+            lexer = mapped ? new TableLexer(file, null) : new TableLexer(new java.io.FileReader(file.toFile()), null);
+        else
+            lexer = mapped ? new Lexer(file, null) : new Lexer(new java.io.FileReader(file.toFile()), null);
+        if (maxErrors > 0)
+            lexer.errors = new LexicalErrors(maxErrors);
+        return lexer;
+    }
+
+    // lex a stream like stdin as it arrives, printing tokens to out whenever the input has to be waited for.
+    // the lexer holds two blocks and keeps no identifiers, so memory does not grow with the input,
+    // only a single lexeme longer than a block is held whole. returns 0 or -1 like Parser.yyparse().
+    public int stream(java.nio.channels.ReadableByteChannel in, java.io.OutputStream out) throws Exception
+    {
+        TokenSink sink = "null".equals(this.sink) ? new NullSink() : new TextSink(out);
+        ChannelReader reader = new ChannelReader(in, sink);
+        Lexer lexer = table ? new TableLexer(reader, null) : new Lexer(reader, null);
+        lexer.symbols = null;
+        if (maxErrors > 0)
+            lexer.errors = new LexicalErrors(maxErrors);
+        return new Compiler(lexer).Compile(sink);
+    }
+
+    java.util.concurrent.ExecutorService pool()
+    {
+        if (virtual)
+        {
+            try
+            {
+                return (java.util.concurrent.ExecutorService)java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                System.err.println("virtual threads need JDK 21 or later, using " + threads + " threads instead");
+            }
+        }
+        return java.util.concurrent.Executors.newFixedThreadPool(Math.max(1, threads));
+    }
+
+    // the files named by the arguments: files as they are, *.minc files under directories, and the matches of globs.
+    // files found in one directory or by one glob are sorted, so the order is the same on every run.
+    public static java.util.List<java.nio.file.Path> expand(java.util.List<String> args) throws Exception
+    {
+        java.util.List<java.nio.file.Path> files = new java.util.ArrayList<>();
+        for (String arg : args)
+        {
+            java.nio.file.Path path = java.nio.file.Paths.get(isGlob(arg) ? "." : arg);
+            if (isGlob(arg))
+            {
+                // walk from the directory in front of the first wildcard, and match what is found against the whole glob.
+                int wildcard = firstWildcard(arg);
+                int slash = arg.lastIndexOf('/', wildcard);
+                java.nio.file.Path base = java.nio.file.Paths.get(slash < 0 ? "." : arg.substring(0, slash + 1));
+                java.nio.file.PathMatcher matcher = java.nio.file.FileSystems.getDefault().getPathMatcher("glob:" + arg);
+                files.addAll(walk(base, p -> matcher.matches(slash < 0 ? base.relativize(p) : p)));
+            }
+            else if (java.nio.file.Files.isDirectory(path))
+            {
+                files.addAll(walk(path, p -> p.getFileName().toString().endsWith(".minc")));
+            }
+            else
+            {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    static java.util.List<java.nio.file.Path> walk(java.nio.file.Path base, java.util.function.Predicate<java.nio.file.Path> accept) throws Exception
+    {
+        try (java.util.stream.Stream<java.nio.file.Path> s = java.nio.file.Files.walk(base))
+        {
+            return s.filter(java.nio.file.Files::isRegularFile).filter(accept).sorted().collect(java.util.stream.Collectors.toList());
+        }
+    }
+
+    static boolean isGlob(String arg)
+    {
+        return firstWildcard(arg) >= 0;
+    }
+
+    static int firstWildcard(String arg)
+    {
+        for (int i = 0; i < arg.length(); i++)
+        {
+            switch (arg.charAt(i))
+            {
+                case '*' : case '?' : case '[' : case '{' :
+                    return i;
+            }
+        }
+        return -1;
+    }
+}
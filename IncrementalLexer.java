@@ -0,0 +1,482 @@
+// keeps the tokens of a text up to date while it is edited, lexing only around each edit.
+// MinC has no token that spans lines, so at the start of every line the Lexer is in state 0 at column 1, the same
+// property ParallelLexer splits on. an edit is lexed from the start of its line, and lexing stops at the first line
+// after the inserted text, where the text is as before and so are the tokens, only moved by the edit.
+//
+// the tokens are kept in blocks of up to BLOCK tokens, each with its offsets and lines relative to a base of the block,
+// and the blocks in a gap buffer with the gap at the last edit. blocks in front of the gap hold their base as it is,
+// blocks behind it relative to where lexing ended, so an edit does not touch the blocks behind it, and moving the gap
+// converts the base of a block rather than every token of it. one Lexer is reset for every edit and keeps no symbols.
+// the cost of an edit is the tokens of the lines it spans, a block it splits, and the blocks the gap moves over since
+// the last edit.
+public class IncrementalLexer
+{
+    static final int BLOCK = 256;
+
+    // tokens like the cursor of the Lexer after each next(), with offsets and lines relative to the base of the block.
+    // a negative length stands for a fixed lexeme.
+    static final class Block
+    {
+        final byte[] kinds   = new byte[BLOCK];
+        final int[]  starts  = new int[BLOCK];
+        final int[]  lengths = new int[BLOCK];
+        final int[]  lines   = new int[BLOCK];
+        final int[]  columns = new int[BLOCK];
+        int          size;
+    }
+
+    CharSequence text;
+    TextReader   reader;
+    Lexer        lexer;
+
+    // the blocks with their base offset, base line and the index of their first token. behind the gap the base is
+    // relative to end and lineno, and the index to count.
+    Block[] blocks    = new Block[16];
+    int[]   bases     = new int[16];
+    int[]   baseLines = new int[16];
+    int[]   firsts    = new int[16];
+    int     gapStart  = 0;
+    int     gapEnd    = 16;
+    int     count;              // tokens in all the blocks
+    int     last;               // the block block() found last, the next token is most often in it
+    java.util.List<Block> spare = new java.util.ArrayList<>();     // emptied blocks, to fill again
+
+    // how lexing ended: 0 at the end of file and -1 on a lexical error, at lineno:column like the Lexer.
+    public int status;
+    public int lineno;
+    public int column;
+    int        end;         // offset where lexing ended
+
+    public int relexed;     // tokens lexed by the last edit
+
+    public IncrementalLexer(CharSequence text) throws Exception
+    {
+        this.text = text;
+        reader = new TextReader(text, 0);
+        lexer  = new Lexer(reader, null, 4096);
+        lexer.symbols = null;       // tokens are kept as offsets into the text, identifiers need no table
+        lex(0, 1, -1);
+    }
+
+    // text is the whole text after replacing removed characters at offset with inserted ones.
+    // returns this, with the tokens of the new text.
+    public IncrementalLexer edit(CharSequence text, int offset, int removed, int inserted) throws Exception
+    {
+        this.text = text;
+        relexed = 0;
+        if (newlineBetween(text, end, offset))
+            return this;    // behind the line where lexing ended, nothing the lexer read has changed
+
+        // the line of the edit follows from the nearest token in front of it, in text the edit left as it was
+        int delta = inserted - removed;
+        int from  = lineStart(text, offset);
+        int first = search(from);
+        int line  = first > 0 ? line(first - 1) + newlines(text, start(first - 1), from)
+                  : count > 0 && start(0) <= offset ? line(0) - newlines(text, from, start(0))
+                  : 1 + newlines(text, 0, from);    // only blanks and comments in front of the edit
+        moveGap(first);
+
+        // the old tokens up to the first line after the edit are lexed again, the rest can follow on from there.
+        int resync = lineEnd(text, offset + inserted);
+        boolean follow = resync < text.length() && end >= resync - delta;
+        if (follow)
+        {
+            dropBehind(resync - delta);
+            // the line numbers behind the edit move by the lines it added or took away
+            int lineBefore = gapEnd < blocks.length ? baseLines[gapEnd] + blocks[gapEnd].lines[0] + lineno
+                                                      - newlines(text, resync, bases[gapEnd] + blocks[gapEnd].starts[0] + end + delta)
+                                                    : lineno - newlines(text, resync, end + delta);
+            if (lex(from, line, resync))
+            {
+                int lineAfter = line + newlines(text, from, resync);
+                end    += delta;
+                lineno += lineAfter - lineBefore;
+                return this;
+            }
+        }
+        else
+        {
+            lex(from, line, -1);
+        }
+        dropBehind(Integer.MAX_VALUE);      // lexing ended in front of the old tokens, none of them are left
+        return this;
+    }
+
+    // lex from an offset at the start of a line into the gap, until a token starts at stop or lexing ends.
+    // returns true when it stopped at stop, otherwise status, lineno, column and end are where lexing ended.
+    boolean lex(int from, int line, int stop) throws Exception
+    {
+        reader.reset(text, from);
+        lexer.reset(reader);
+        lexer.lineno = line;
+        int token;
+        while ((token = lexer.next()) > 0)
+        {
+            if (stop >= 0 && from + lexer.tokenStart >= stop)
+                return true;
+            add(token, from + lexer.tokenStart,
+                lexer.tokenConstant == Lexer.LESS_THAN ? -1 : lexer.tokenConstant == Lexer.NOT_EQUAL ? -2 : lexer.tokenLength,
+                lexer.lineno, lexer.column);
+            relexed++;
+        }
+        status = token;
+        lineno = lexer.lineno;
+        column = lexer.column;
+        end    = from + lexer.tokenStart;
+        if (token == 0 && (end < 0 || end >= text.length() || text.charAt(end) != 0))
+            end = text.length();    // ran out of text rather than stopping at a NUL, text added at the end is lexed
+        return false;
+    }
+
+    // append a token in front of the gap.
+    void add(int kind, int start, int length, int line, int column)
+    {
+        int k = gapStart - 1;
+        if (k < 0 || blocks[k].size == BLOCK)
+        {
+            if (gapStart == gapEnd)
+                grow();
+            k = gapStart++;
+            blocks[k]    = block();
+            bases[k]     = start;
+            baseLines[k] = line;
+            firsts[k]    = k > 0 ? firsts[k - 1] + blocks[k - 1].size : 0;
+        }
+        Block b = blocks[k];
+        int   j = b.size++;
+        b.kinds[j]   = (byte)kind;
+        b.starts[j]  = start - bases[k];
+        b.lengths[j] = length;
+        b.lines[j]   = line - baseLines[k];
+        b.columns[j] = column;
+        count++;
+    }
+
+    // take the tokens behind the gap that start in front of offset, an offset in the text before the edit, out.
+    void dropBehind(int offset)
+    {
+        while (gapEnd < blocks.length)
+        {
+            Block b    = blocks[gapEnd];
+            int   base = bases[gapEnd] + end;
+            if (base + b.starts[b.size - 1] >= offset)
+            {
+                int j = 0;
+                while (base + b.starts[j] < offset)
+                    j++;
+                remove(b, 0, j);
+                firsts[gapEnd] += j;
+                count -= j;
+                return;
+            }
+            count -= b.size;
+            free(gapEnd++);
+        }
+    }
+
+    // move the gap in front of token i, converting the bases of the blocks it passes and splitting the block i is in.
+    void moveGap(int i)
+    {
+        while (gapStart > 0 && firsts[gapStart - 1] >= i)
+        {
+            int   k = gapStart - 1;
+            Block b = blocks[k];
+            if (gapEnd < blocks.length && b.size + blocks[gapEnd].size <= BLOCK)
+            {
+                insert(b, 0, b.size, base(k), baseLine(k), gapEnd);
+                firsts[gapEnd] -= b.size;
+                free(--gapStart);
+            }
+            else
+            {
+                blocks[k] = null;
+                gapStart--;
+                gapEnd--;
+                blocks[gapEnd]    = b;
+                bases[gapEnd]     = bases[k] - end;
+                baseLines[gapEnd] = baseLines[k] - lineno;
+                firsts[gapEnd]    = firsts[k] - count;
+            }
+        }
+        while (gapEnd < blocks.length && firsts[gapEnd] + count + blocks[gapEnd].size <= i)
+        {
+            int   k = gapEnd;
+            Block b = blocks[k];
+            if (gapStart > 0 && blocks[gapStart - 1].size + b.size <= BLOCK)
+            {
+                append(b, 0, b.size, base(k), baseLine(k), gapStart - 1);
+                free(gapEnd++);
+            }
+            else
+            {
+                blocks[k] = null;
+                blocks[gapStart]    = b;
+                bases[gapStart]     = bases[k] + end;
+                baseLines[gapStart] = baseLines[k] + lineno;
+                firsts[gapStart]    = firsts[k] + count;
+                gapStart++;
+                gapEnd++;
+            }
+        }
+
+        if (gapStart > 0 && firsts[gapStart - 1] + blocks[gapStart - 1].size > i)
+        {
+            // the tokens from i on of the last block in front go behind the gap
+            int   k = gapStart - 1;
+            Block b = blocks[k];
+            int   j = i - firsts[k];
+            int   n = b.size - j;
+            if (gapEnd == blocks.length || n + blocks[gapEnd].size > BLOCK)
+                newBehind(base(k), baseLine(k), i + n);
+            insert(b, j, b.size, base(k), baseLine(k), gapEnd);
+            firsts[gapEnd] -= n;
+            b.size = j;
+        }
+        else if (gapEnd < blocks.length && firsts[gapEnd] + count < i)
+        {
+            // the tokens in front of i of the first block behind go in front of the gap
+            Block b = blocks[gapEnd];
+            int   j = i - firsts[gapEnd] - count;
+            if (gapStart == 0 || blocks[gapStart - 1].size + j > BLOCK)
+                newInFront(base(gapEnd), baseLine(gapEnd), i - j);
+            int   k = gapEnd;     // where it is after newInFront(), which may have grown the blocks
+            append(b, 0, j, base(k), baseLine(k), gapStart - 1);
+            remove(b, 0, j);
+            firsts[k] += j;
+        }
+    }
+
+    // an empty block in front of the gap, whose tokens start at token index.
+    void newInFront(int base, int line, int index)
+    {
+        if (gapStart == gapEnd)
+            grow();
+        blocks[gapStart]    = block();
+        bases[gapStart]     = base;
+        baseLines[gapStart] = line;
+        firsts[gapStart]    = index;
+        gapStart++;
+    }
+
+    // an empty block behind the gap, in front of token index.
+    void newBehind(int base, int line, int index)
+    {
+        if (gapStart == gapEnd)
+            grow();
+        gapEnd--;
+        blocks[gapEnd]    = block();
+        bases[gapEnd]     = base - end;
+        baseLines[gapEnd] = line - lineno;
+        firsts[gapEnd]    = index - count;
+    }
+
+    // append the tokens from up to to of a block with the given base to block k.
+    void append(Block from, int lo, int hi, int base, int line, int k)
+    {
+        Block b = blocks[k];
+        copy(from, lo, hi, base - base(k), line - baseLine(k), b, b.size);
+        b.size += hi - lo;
+    }
+
+    // put the tokens from lo up to hi of a block with the given base in front of the tokens of block k.
+    void insert(Block from, int lo, int hi, int base, int line, int k)
+    {
+        Block b = blocks[k];
+        int   n = hi - lo;
+        copy(b, 0, b.size, 0, 0, b, n);
+        copy(from, lo, hi, base - base(k), line - baseLine(k), b, 0);
+        b.size += n;
+    }
+
+    static void remove(Block b, int lo, int hi)
+    {
+        copy(b, hi, b.size, 0, 0, b, lo);
+        b.size -= hi - lo;
+    }
+
+    static void copy(Block from, int lo, int hi, int offset, int line, Block to, int at)
+    {
+        int n = hi - lo;
+        System.arraycopy(from.kinds, lo, to.kinds, at, n);
+        System.arraycopy(from.lengths, lo, to.lengths, at, n);
+        System.arraycopy(from.columns, lo, to.columns, at, n);
+        if (offset == 0 && line == 0)
+        {
+            System.arraycopy(from.starts, lo, to.starts, at, n);
+            System.arraycopy(from.lines, lo, to.lines, at, n);
+            return;
+        }
+        for (int i = 0; i < n; i++)
+        {
+            to.starts[at + i] = from.starts[lo + i] + offset;
+            to.lines[at + i]  = from.lines[lo + i] + line;
+        }
+    }
+
+    Block block()
+    {
+        if (spare.isEmpty())
+            return new Block();
+        Block b = spare.remove(spare.size() - 1);
+        b.size = 0;
+        return b;
+    }
+
+    void free(int k)
+    {
+        spare.add(blocks[k]);
+        blocks[k] = null;
+    }
+
+    void grow()
+    {
+        int n = blocks.length * 2;
+        int behind = blocks.length - gapEnd;
+        blocks    = grow(blocks, n, behind);
+        bases     = grow(bases, n, behind);
+        baseLines = grow(baseLines, n, behind);
+        firsts    = grow(firsts, n, behind);
+        gapEnd    = n - behind;
+    }
+
+    static Block[] grow(Block[] a, int n, int behind)
+    {
+        Block[] b = java.util.Arrays.copyOf(a, n);
+        System.arraycopy(a, a.length - behind, b, n - behind, behind);
+        java.util.Arrays.fill(b, a.length - behind, n - behind, null);
+        return b;
+    }
+
+    static int[] grow(int[] a, int n, int behind)
+    {
+        int[] b = java.util.Arrays.copyOf(a, n);
+        System.arraycopy(a, a.length - behind, b, n - behind, behind);
+        return b;
+    }
+
+    // the first token that starts at or behind offset.
+    int search(int offset)
+    {
+        int lo = 0, hi = size();
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (start(mid) < offset)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // where the line with offset in it starts.
+    static int lineStart(CharSequence text, int offset)
+    {
+        while (offset > 0 && text.charAt(offset - 1) != '\n')
+            offset--;
+        return offset;
+    }
+
+    // where the line after the one with offset in it starts, or the length of the text.
+    static int lineEnd(CharSequence text, int offset)
+    {
+        int length = text.length();
+        while (offset < length && text.charAt(offset) != '\n')
+            offset++;
+        return Math.min(offset + 1, length);
+    }
+
+    // whether there is a newline in from up to to. the lexer reads no further than the newline ending a line.
+    static boolean newlineBetween(CharSequence text, int from, int to)
+    {
+        for (int i = Math.max(from, 0); i < to; i++)
+        {
+            if (text.charAt(i) == '\n')
+                return true;
+        }
+        return false;
+    }
+
+    static int newlines(CharSequence text, int from, int to)
+    {
+        int n = 0;
+        for (int i = from; i < to; i++)
+        {
+            if (text.charAt(i) == '\n')
+                n++;
+        }
+        return n;
+    }
+
+    int base(int k)
+    {
+        return k < gapStart ? bases[k] : bases[k] + end;
+    }
+
+    int baseLine(int k)
+    {
+        return k < gapStart ? baseLines[k] : baseLines[k] + lineno;
+    }
+
+    int first(int k)
+    {
+        return k < gapStart ? firsts[k] : firsts[k] + count;
+    }
+
+    // the block token i is in.
+    int block(int i)
+    {
+        int k = last;
+        if ((k < gapStart || k >= gapEnd && k < blocks.length) && first(k) <= i && i < first(k) + blocks[k].size)
+            return k;
+        int lo = 0, hi = gapStart + blocks.length - gapEnd - 1;
+        while (lo < hi)
+        {
+            int mid = (lo + hi + 1) >>> 1;
+            if (first(mid < gapStart ? mid : mid + gapEnd - gapStart) <= i)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        return last = lo < gapStart ? lo : lo + gapEnd - gapStart;
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    public int kind(int i)
+    {
+        int k = block(i);
+        return blocks[k].kinds[i - first(k)];
+    }
+
+    public int start(int i)
+    {
+        int k = block(i);
+        return base(k) + blocks[k].starts[i - first(k)];
+    }
+
+    public int line(int i)
+    {
+        int k = block(i);
+        return baseLine(k) + blocks[k].lines[i - first(k)];
+    }
+
+    public int column(int i)
+    {
+        int k = block(i);
+        return blocks[k].columns[i - first(k)];
+    }
+
+    // the lexeme of token i, as Lexer.lexeme() read it.
+    public CharSequence lexeme(int i)
+    {
+        int k = block(i);
+        int length = blocks[k].lengths[i - first(k)];
+        if (length < 0)
+            return new Lexeme().set(TokenBuffer.constants[-length - 1], 0, TokenBuffer.constants[-length - 1].length);
+        return text.subSequence(start(i), start(i) + length);
+    }
+}
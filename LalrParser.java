@@ -0,0 +1,597 @@
+// a table-driven LALR(1) parser for MinC that builds an Ast. the tables are generated from the grammar below when the
+// class loads, as TableLexer generates its table: LR(1) item sets are merged by their LR(0) core while they are built,
+// which gives the LALR(1) sets, and shift/reduce conflicts are settled by precedence like yacc does.
+//
+// the terminals are the tokens of Parser, with OP split by its lexeme into ADDOP for '+' and '-' and MULOP for '*'
+// and '/', so the grammar can give them their usual precedence. $end is terminal 0.
+// only the tokens some node is made from are kept in tokens, punctuation is parsed and forgotten.
+public class LalrParser
+{
+    static final int TERMINALS = Parser.tokens.length + 2;
+    static final int END       = 0;
+    static final int ADDOP     = 1;
+    static final int MULOP     = TERMINALS - 1;
+
+    // what a reduction builds, the first int of the action of a rule. an Ast node kind, or one of these.
+    static final int PASS   = -1;   // the value of the symbol at the position that follows
+    static final int EMPTY  = -2;   // nothing
+    static final int LIST   = -3;   // a node of the kind that follows, with the symbol at the position after that as its first child if given
+    static final int APPEND = -4;   // the list at the position that follows, with the symbol at the second position appended
+    // a node kind is followed by the position of the token of the node, -1 for none, then the positions of its children.
+    // children that are nothing are left out.
+
+    static final String[]  SYMBOLS;         // terminals, then nonterminals
+    static final int       NONTERMINALS;
+    static final int[]     LHS;             // by rule, rule 0 accepts
+    static final int[][]   RHS;
+    static final int[][]   ACTIONS;
+    static final boolean[] KEPT;            // by terminal, some node is made from it
+    static final int       STATES;
+    static final short[]   ACTION;          // ACTION[state * TERMINALS + terminal]: shift to s as s + 1, reduce by rule r as -r - 1, 0 an error
+    static final short[]   GOTO;            // GOTO[state * NONTERMINALS + nonterminal - TERMINALS]
+
+    static
+    {
+        Grammar g = new Grammar();
+        g.left("RELOP");
+        g.left("ADDOP");
+        g.left("MULOP");
+        g.nonassoc("IF");
+        g.nonassoc("ELSE");     // binds an else to the nearest if
+
+        g.rule("program",   "decls",                                    PASS, 0);
+        g.rule("decls",     "",                                         LIST, Ast.PROGRAM);
+        g.rule("decls",     "decls decl",                               APPEND, 0, 1);
+        g.rule("decl",      "FUNC ID params rettype block",             Ast.FUNCTION, 1, 2, 3, 4);
+        g.rule("decl",      "vardecl",                                  PASS, 0);
+        g.rule("params",    "",                                         LIST, Ast.PARAMS);
+        g.rule("params",    "LPAREN RPAREN",                            LIST, Ast.PARAMS);
+        g.rule("params",    "LPAREN paramlist RPAREN",                  PASS, 1);
+        g.rule("paramlist", "param",                                    LIST, Ast.PARAMS, 0);
+        g.rule("paramlist", "paramlist COMMA param",                    APPEND, 0, 2);
+        g.rule("param",     "ID TYPEOF type",                           Ast.PARAM, 0, 2);
+        g.rule("param",     "type ID",                                  Ast.PARAM, 1, 0);
+        g.rule("rettype",   "",                                         EMPTY);
+        g.rule("rettype",   "FUNCRET type",                             PASS, 1);
+        g.rule("type",      "INT",                                      Ast.TYPE, 0);
+        g.rule("type",      "VOID",                                     Ast.TYPE, 0);
+        g.rule("block",     "BEGIN stmts END",                          PASS, 1);
+        g.rule("stmts",     "",                                         LIST, Ast.BLOCK);
+        g.rule("stmts",     "stmts stmt",                               APPEND, 0, 1);
+        g.rule("vardecl",   "VAR type ID SEMI",                         Ast.VARIABLE, 2, 1);
+        g.rule("vardecl",   "VAR ID TYPEOF type SEMI",                  Ast.VARIABLE, 1, 3);
+        g.rule("stmt",      "vardecl",                                  PASS, 0);
+        g.rule("stmt",      "ID ASSIGN expr SEMI",                      Ast.ASSIGN, 0, 2);
+        g.rule("stmt",      "PRINT expr SEMI",                          Ast.PRINT, 0, 1);
+        g.rule("stmt",      "expr SEMI",                                PASS, 0);
+        g.rule("stmt",      "block",                                    PASS, 0);
+        g.rule("stmt",      "IF LPAREN expr RPAREN stmt %prec IF",      Ast.IF, 0, 2, 4);
+        g.rule("stmt",      "IF LPAREN expr RPAREN stmt ELSE stmt",     Ast.IF, 0, 2, 4, 6);
+        g.rule("stmt",      "WHILE LPAREN expr RPAREN stmt",            Ast.WHILE, 0, 2, 4);
+        g.rule("expr",      "expr RELOP expr",                          Ast.BINARY, 1, 0, 2);
+        g.rule("expr",      "expr ADDOP expr",                          Ast.BINARY, 1, 0, 2);
+        g.rule("expr",      "expr MULOP expr",                          Ast.BINARY, 1, 0, 2);
+        g.rule("expr",      "LPAREN expr RPAREN",                       PASS, 1);
+        g.rule("expr",      "ID",                                       Ast.NAME, 0);
+        g.rule("expr",      "NUM",                                      Ast.NUMBER, 0);
+        g.rule("expr",      "ID LPAREN args RPAREN",                    Ast.CALL, 0, 2);
+        g.rule("args",      "",                                         LIST, Ast.ARGS);
+        g.rule("args",      "arglist",                                  PASS, 0);
+        g.rule("arglist",   "expr",                                     LIST, Ast.ARGS, 0);
+        g.rule("arglist",   "arglist COMMA expr",                       APPEND, 0, 2);
+
+        SYMBOLS      = g.names.toArray(new String[0]);
+        NONTERMINALS = SYMBOLS.length - TERMINALS;
+        int rules = g.rules.size();
+        LHS     = new int[rules];
+        RHS     = new int[rules][];
+        ACTIONS = g.actions.toArray(new int[0][]);
+        KEPT    = new boolean[TERMINALS];
+        for (int r = 0; r < rules; r++)
+        {
+            int[] rule = g.rules.get(r);
+            LHS[r] = rule[0];
+            RHS[r] = java.util.Arrays.copyOfRange(rule, 1, rule.length);
+            if (ACTIONS[r][0] >= 0 && ACTIONS[r][1] >= 0)
+                KEPT[RHS[r][ACTIONS[r][1]]] = true;
+        }
+        Tables t = new Tables(g);
+        STATES = t.states;
+        ACTION = t.action;
+        GOTO   = t.gotos;
+    }
+
+    final Lexer             lexer;
+    public final TokenBuffer tokens;    // the tokens the nodes are made from
+    public final Ast        ast;
+
+    // the stack: the state, and the value of the symbol that led to it. lasts holds the last child of a list.
+    int[] states = new int[64];
+    int[] values = new int[64];
+    int[] lasts  = new int[64];
+    int   sp;
+    int   token;                // index in tokens of the token just read, -1 when it was not kept
+
+    // how parsing ended: 0 for a program, -1 on a lexical or syntax error, at lineno:column like the Lexer.
+    public int     status;
+    public int     lineno;
+    public int     column;
+    public boolean syntaxError;
+    public int     unexpected = -1;  // the terminal of a syntax error
+
+    // parse the tokens of a lexer, whose lexemes tokens can read from its source. capacity is a guess of the nodes.
+    public LalrParser(Lexer lexer, TokenBuffer tokens, int capacity)
+    {
+        this.lexer  = lexer;
+        this.tokens = tokens;
+        this.ast    = new Ast(tokens, capacity);
+    }
+
+    // a node and a kept token for every 8 bytes of source is about right for MinC, so the arrays rarely grow.
+    public LalrParser(java.nio.file.Path path, boolean table) throws Exception
+    {
+        this(table ? new TableLexer(path, null) : new Lexer(path, null), (int)Math.min(Integer.MAX_VALUE, java.nio.file.Files.size(path) / 8));
+    }
+
+    public LalrParser(CharSequence text, boolean table) throws Exception
+    {
+        this(table ? new TableLexer(new TextReader(text, 0), null) : new Lexer(new TextReader(text, 0), null), text.length() / 8);
+        tokens.text = text;
+    }
+
+    // parse the tokens of a lexer of a mapped file, a PipelinedLexer for instance. the tokens of an OffsetLexer
+    // keep no positions, they are looked up in its LineIndex.
+    public LalrParser(Lexer lexer, int capacity)
+    {
+        this(lexer, new TokenBuffer(capacity, lexer instanceof OffsetLexer ? ((OffsetLexer)lexer).lines : null), capacity);
+        tokens.bytes = lexer.mapped;
+    }
+
+    // parse the whole input, returns status. ast.root is the PROGRAM when it is 0.
+    public int parse() throws Exception
+    {
+        sp = 0;
+        states[0] = 0;
+        int terminal = read();
+        while (true)
+        {
+            if (terminal < 0)
+                return end(-1);     // a lexical error
+            int action = ACTION[states[sp] * TERMINALS + terminal];
+            if (action > 0)
+            {
+                if (++sp == states.length)
+                    grow();
+                states[sp] = action - 1;
+                values[sp] = token;
+                lasts[sp]  = -1;
+                terminal = read();
+            }
+            else if (action < 0)
+            {
+                int rule = -action - 1;
+                if (rule == 0)
+                {
+                    ast.root = values[sp];
+                    return end(0);
+                }
+                sp -= RHS[rule].length;
+                if (sp + 1 == states.length)
+                    grow();
+                reduce(rule, sp + 1);
+                states[sp + 1] = GOTO[states[sp] * NONTERMINALS + LHS[rule] - TERMINALS];
+                sp++;
+            }
+            else
+            {
+                syntaxError = true;
+                unexpected  = terminal;
+                if (lexer instanceof OffsetLexer)
+                    ((OffsetLexer)lexer).locate();
+                return end(-1);
+            }
+        }
+    }
+
+    // the next terminal, or -1 on a lexical error. the token is added to tokens when a node can be made from it.
+    int read() throws Exception
+    {
+        int kind = lexer.next();
+        if (kind <= 0)
+            return kind < 0 ? -1 : END;
+        int terminal = kind - Parser.OP + 1;
+        if (kind == Parser.OP)
+        {
+            char c = lexer.lexeme().charAt(0);
+            if (c == '*' || c == '/')
+                terminal = MULOP;
+        }
+        token = -1;
+        if (KEPT[terminal])
+        {
+            tokens.add(lexer);
+            token = tokens.size() - 1;
+        }
+        return terminal;
+    }
+
+    // build what rule makes of the symbols from base on, and leave its value at base.
+    void reduce(int rule, int base)
+    {
+        int[] action = ACTIONS[rule];
+        switch (action[0])
+        {
+            case PASS :
+                values[base] = values[base + action[1]];
+                lasts[base]  = lasts[base + action[1]];
+                break;
+            case EMPTY :
+                values[base] = -1;
+                lasts[base]  = -1;
+                break;
+            case LIST :
+            {
+                int node = ast.add(action[1], -1);
+                lasts[base]  = action.length > 2 ? ast.append(node, -1, values[base + action[2]]) : -1;
+                values[base] = node;
+                break;
+            }
+            case APPEND :
+            {
+                int list = values[base + action[1]];
+                lasts[base]  = ast.append(list, lasts[base + action[1]], values[base + action[2]]);
+                values[base] = list;
+                break;
+            }
+            default :
+            {
+                int node = ast.add(action[0], action[1] < 0 ? -1 : values[base + action[1]]);
+                int last = -1;
+                for (int i = 2; i < action.length; i++)
+                {
+                    int child = values[base + action[i]];
+                    if (child >= 0)
+                        last = ast.append(node, last, child);
+                }
+                values[base] = node;
+                lasts[base]  = -1;
+            }
+        }
+    }
+
+    void grow()
+    {
+        int n = states.length * 2;
+        states = java.util.Arrays.copyOf(states, n);
+        values = java.util.Arrays.copyOf(values, n);
+        lasts  = java.util.Arrays.copyOf(lasts, n);
+    }
+
+    int end(int status)
+    {
+        this.status = status;
+        lineno = lexer.lineno;
+        column = lexer.column;
+        tokens.status = status;
+        tokens.lineno = lineno;
+        tokens.column = column;
+        return status;
+    }
+
+    public static String terminalName(int terminal)
+    {
+        return SYMBOLS[terminal];
+    }
+
+    // the rules, with the symbols named by strings. collects what the static block turns into tables.
+    static final class Grammar
+    {
+        final java.util.List<String>               names   = new java.util.ArrayList<>();
+        final java.util.Map<String, Integer>       ids     = new java.util.HashMap<>();
+        final java.util.List<int[]>                rules   = new java.util.ArrayList<>();   // lhs, then rhs
+        final java.util.List<int[]>                actions = new java.util.ArrayList<>();
+        final java.util.List<Integer>              rulePrecedence = new java.util.ArrayList<>();
+        final int[]                                precedence = new int[TERMINALS];         // 0 for none
+        final boolean[]                            leftAssociative = new boolean[TERMINALS];
+        int                                        levels = 0;
+
+        Grammar()
+        {
+            names.add("$end");
+            for (int i = 0; i < Parser.tokens.length; i++)
+                names.add(i == 0 ? "ADDOP" : Parser.tokens[i]);
+            names.add("MULOP");
+            for (int i = 0; i < names.size(); i++)
+                ids.put(names.get(i), i);
+            names.add("$accept");
+            ids.put("$accept", TERMINALS);
+            rules.add(null);        // $accept : the first lhs, once it is known
+            actions.add(new int[] {PASS, 0});
+            rulePrecedence.add(0);
+        }
+
+        int symbol(String name)
+        {
+            Integer id = ids.get(name);
+            if (id == null)
+            {
+                if (Character.isUpperCase(name.charAt(0)))
+                    throw new IllegalArgumentException("unknown terminal " + name);
+                id = names.size();
+                names.add(name);
+                ids.put(name, id);
+            }
+            return id;
+        }
+
+        void left(String terminal)
+        {
+            precedence[symbol(terminal)] = ++levels;
+            leftAssociative[symbol(terminal)] = true;
+        }
+
+        void nonassoc(String terminal)
+        {
+            precedence[symbol(terminal)] = ++levels;
+        }
+
+        // a rule lhs : rhs, rhs may end with %prec and a terminal to take the precedence of that terminal.
+        void rule(String lhs, String rhs, int... action)
+        {
+            String[] words = rhs.trim().isEmpty() ? new String[0] : rhs.trim().split("\\s+");
+            int prec = 0;
+            int length = words.length;
+            if (length >= 2 && words[length - 2].equals("%prec"))
+            {
+                prec = precedence[symbol(words[length - 1])];
+                length -= 2;
+            }
+            int[] rule = new int[length + 1];
+            rule[0] = symbol(lhs);
+            for (int i = 0; i < length; i++)
+            {
+                rule[i + 1] = symbol(words[i]);
+                if (prec == 0 && rule[i + 1] < TERMINALS)
+                    prec = -1;      // from the last terminal, below
+            }
+            if (prec < 0)
+            {
+                prec = 0;
+                for (int i = length; i >= 1 && prec == 0; i--)
+                {
+                    if (rule[i] < TERMINALS)
+                        prec = precedence[rule[i]];
+                }
+            }
+            if (rules.get(0) == null)
+                rules.set(0, new int[] {TERMINALS, rule[0]});
+            rules.add(rule);
+            actions.add(action);
+            rulePrecedence.add(prec);
+        }
+    }
+
+    // the LALR(1) automaton of a grammar. an item is rule << 8 | dot, a set of lookaheads a bit mask of terminals.
+    static final class Tables
+    {
+        final Grammar g;
+        final int     symbols;
+        final boolean[] nullable;
+        final long[]    first;
+        final java.util.List<java.util.List<Integer>> byLhs = new java.util.ArrayList<>();
+
+        final java.util.List<int[]>   kernels    = new java.util.ArrayList<>();
+        final java.util.List<long[]>  lookaheads = new java.util.ArrayList<>();
+        final java.util.List<int[]>   shifts     = new java.util.ArrayList<>();    // by state and symbol, the next state or -1
+        final java.util.Map<String, Integer> byCore = new java.util.HashMap<>();
+
+        int     states;
+        short[] action;
+        short[] gotos;
+
+        Tables(Grammar g)
+        {
+            this.g   = g;
+            symbols  = g.names.size();
+            nullable = new boolean[symbols];
+            first    = new long[symbols];
+            for (int s = 0; s < symbols; s++)
+                byLhs.add(new java.util.ArrayList<>());
+            for (int r = 0; r < g.rules.size(); r++)
+                byLhs.get(g.rules.get(r)[0]).add(r);
+            for (int t = 0; t < TERMINALS; t++)
+                first[t] = 1L << t;
+            for (boolean changed = true; changed; )
+            {
+                changed = false;
+                for (int[] rule : g.rules)
+                {
+                    long f = first(rule, 1);
+                    boolean empty = nullable(rule, 1);
+                    if ((first[rule[0]] | f) != first[rule[0]] || (empty && !nullable[rule[0]]))
+                    {
+                        first[rule[0]] |= f;
+                        nullable[rule[0]] |= empty;
+                        changed = true;
+                    }
+                }
+            }
+            automaton();
+            tables();
+        }
+
+        // FIRST of the symbols of a rule from position i on.
+        long first(int[] rule, int i)
+        {
+            long f = 0;
+            for (; i < rule.length; i++)
+            {
+                f |= first[rule[i]];
+                if (!nullable[rule[i]])
+                    break;
+            }
+            return f;
+        }
+
+        boolean nullable(int[] rule, int i)
+        {
+            for (; i < rule.length; i++)
+            {
+                if (!nullable[rule[i]])
+                    return false;
+            }
+            return true;
+        }
+
+        // the items of a state with their lookaheads, kernel items first.
+        java.util.LinkedHashMap<Integer, Long> closure(int state)
+        {
+            java.util.LinkedHashMap<Integer, Long> items = new java.util.LinkedHashMap<>();
+            java.util.ArrayDeque<Integer> work = new java.util.ArrayDeque<>();
+            int[] kernel = kernels.get(state);
+            for (int i = 0; i < kernel.length; i++)
+            {
+                items.put(kernel[i], lookaheads.get(state)[i]);
+                work.add(kernel[i]);
+            }
+            while (!work.isEmpty())
+            {
+                int item = work.poll();
+                int[] rule = g.rules.get(item >> 8);
+                int dot = (item & 0xFF) + 1;    // position in rule, after its lhs
+                if (dot >= rule.length || rule[dot] < TERMINALS)
+                    continue;
+                long follow = first(rule, dot + 1) | (nullable(rule, dot + 1) ? items.get(item) : 0);
+                for (int r : byLhs.get(rule[dot]))
+                {
+                    Long old = items.get(r << 8);
+                    long merged = (old == null ? 0 : old) | follow;
+                    if (old == null || merged != old)
+                    {
+                        items.put(r << 8, merged);
+                        work.add(r << 8);
+                    }
+                }
+            }
+            return items;
+        }
+
+        int state(int[] kernel, long[] lookahead, java.util.ArrayDeque<Integer> work, java.util.BitSet queued)
+        {
+            String core = java.util.Arrays.toString(kernel);
+            Integer s = byCore.get(core);
+            if (s == null)
+            {
+                s = kernels.size();
+                byCore.put(core, s);
+                kernels.add(kernel);
+                lookaheads.add(lookahead);
+                int[] row = new int[symbols];
+                java.util.Arrays.fill(row, -1);
+                shifts.add(row);
+            }
+            else
+            {
+                long[] old = lookaheads.get(s);
+                boolean changed = false;
+                for (int i = 0; i < old.length; i++)
+                {
+                    changed |= (old[i] | lookahead[i]) != old[i];
+                    old[i] |= lookahead[i];
+                }
+                if (!changed)
+                    return s;
+            }
+            if (!queued.get(s))
+            {
+                queued.set(s);
+                work.add(s);
+            }
+            return s;
+        }
+
+        void automaton()
+        {
+            java.util.ArrayDeque<Integer> work = new java.util.ArrayDeque<>();
+            java.util.BitSet queued = new java.util.BitSet();
+            state(new int[] {0}, new long[] {1L << END}, work, queued);
+            while (!work.isEmpty())
+            {
+                int s = work.poll();
+                queued.clear(s);
+                java.util.TreeMap<Integer, java.util.TreeMap<Integer, Long>> next = new java.util.TreeMap<>();
+                for (java.util.Map.Entry<Integer, Long> e : closure(s).entrySet())
+                {
+                    int item = e.getKey();
+                    int[] rule = g.rules.get(item >> 8);
+                    int dot = (item & 0xFF) + 1;
+                    if (dot < rule.length)
+                        next.computeIfAbsent(rule[dot], x -> new java.util.TreeMap<>()).merge(item + 1, e.getValue(), (a, b) -> a | b);
+                }
+                for (java.util.Map.Entry<Integer, java.util.TreeMap<Integer, Long>> e : next.entrySet())
+                {
+                    int[]  kernel    = new int[e.getValue().size()];
+                    long[] lookahead = new long[kernel.length];
+                    int i = 0;
+                    for (java.util.Map.Entry<Integer, Long> item : e.getValue().entrySet())
+                    {
+                        kernel[i]      = item.getKey();
+                        lookahead[i++] = item.getValue();
+                    }
+                    shifts.get(s)[e.getKey()] = state(kernel, lookahead, work, queued);
+                }
+            }
+        }
+
+        void tables()
+        {
+            states = kernels.size();
+            action = new short[states * TERMINALS];
+            gotos  = new short[states * (symbols - TERMINALS)];
+            for (int s = 0; s < states; s++)
+            {
+                int[] row = shifts.get(s);
+                for (int x = 0; x < symbols; x++)
+                {
+                    if (row[x] < 0)
+                        continue;
+                    if (x < TERMINALS)
+                        action[s * TERMINALS + x] = (short)(row[x] + 1);
+                    else
+                        gotos[s * (symbols - TERMINALS) + x - TERMINALS] = (short)row[x];
+                }
+                for (java.util.Map.Entry<Integer, Long> e : closure(s).entrySet())
+                {
+                    int r = e.getKey() >> 8;
+                    if ((e.getKey() & 0xFF) + 1 < g.rules.get(r).length)
+                        continue;
+                    for (int t = 0; t < TERMINALS; t++)
+                    {
+                        if ((e.getValue() & 1L << t) != 0)
+                            reduce(s, t, r);
+                    }
+                }
+            }
+        }
+
+        // reduce by rule r on terminal t in state s, unless a shift there takes precedence.
+        void reduce(int s, int t, int r)
+        {
+            int i = s * TERMINALS + t;
+            short old = action[i];
+            if (old == 0)
+            {
+                action[i] = (short)(-r - 1);
+                return;
+            }
+            int rulePrec = g.rulePrecedence.get(r);
+            if (old < 0 || rulePrec == 0 || g.precedence[t] == 0)
+                throw new IllegalStateException("grammar conflict in state " + s + " on " + g.names.get(t) + ": "
+                                                + (old < 0 ? "rules " + (-old - 1) + " and " + r : "shift or rule " + r));
+            if (rulePrec > g.precedence[t] || (rulePrec == g.precedence[t] && g.leftAssociative[t]))
+                action[i] = (short)(-r - 1);
+            else if (rulePrec == g.precedence[t])
+                action[i] = 0;      // non-associative
+        }
+    }
+}
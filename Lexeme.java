@@ -0,0 +1,224 @@
+// a view of a lexeme over the input of the Lexer, without copying it into a String.
+// the Lexer reuses its view for every token, call toString() to keep the characters.
+public class Lexeme implements CharSequence
+{
+    char[]              chars;  // a block of a Reader, or a fixed lexeme
+    java.nio.ByteBuffer bytes;  // the bytes of a mapped file, when chars is null
+    CharSequence        text;   // a text kept whole, when chars and bytes are null
+    int                 offset;
+    int                 length;
+
+    Lexeme set(char[] chars, int offset, int length)
+    {
+        this.chars  = chars;
+        this.bytes  = null;
+        this.text   = null;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    Lexeme set(java.nio.ByteBuffer bytes, int offset, int length)
+    {
+        this.chars  = null;
+        this.bytes  = bytes;
+        this.text   = null;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    Lexeme set(CharSequence text, int offset, int length)
+    {
+        this.chars  = null;
+        this.bytes  = null;
+        this.text   = text;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    public int length()
+    {
+        return length;
+    }
+
+    public char charAt(int index)
+    {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        if (chars != null)
+            return chars[offset + index];
+        if (bytes != null)
+            return (char)bytes.get(offset + index);
+        return text.charAt(offset + index);
+    }
+
+    public CharSequence subSequence(int start, int end)
+    {
+        return toString().substring(start, end);
+    }
+
+    // true if the lexeme reads the same as s.
+    public boolean contentEquals(CharSequence s)
+    {
+        if (s.length() != length)
+            return false;
+        for (int i = 0; i < length; i++)
+        {
+            if (charAt(i) != s.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    // the values of a NUM lexeme, digits with a period and more digits after it if it has a fraction.
+    // they are read straight from the input, without a String.
+
+    static final double[] POWERS = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                                    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    char at(int i)
+    {
+        if (chars != null)
+            return chars[offset + i];
+        if (bytes != null)
+            return (char)bytes.get(offset + i);
+        return text.charAt(offset + i);
+    }
+
+    // true if the number has no period.
+    public boolean isInteger()
+    {
+        for (int i = 0; i < length; i++)
+        {
+            if (at(i) == '.')
+                return false;
+        }
+        return true;
+    }
+
+    // the value of an integer. ArithmeticException when it is above Integer.MAX_VALUE, where parseInt() would fail too.
+    public int intValue()
+    {
+        if (length == 0)
+            throw new NumberFormatException("not a number: empty lexeme");
+        long value = 0;
+        for (int i = 0; i < length; i++)
+        {
+            int d = at(i) - '0';
+            if (d < 0 || d > 9)
+                throw new NumberFormatException("not an integer: " + this);
+            value = value * 10 + d;
+            if (value > Integer.MAX_VALUE)
+                throw new ArithmeticException("integer out of range: " + this);
+        }
+        return (int)value;
+    }
+
+    // the double nearest to the number, as Double.parseDouble() rounds it. up to 18 significant digits are
+    // gathered in a long. when they fit in the 53 bits of a double and the power of ten is exact, one
+    // multiplication or division gives the correctly rounded value. longer numbers go to parseDouble().
+    public double doubleValue()
+    {
+        long    digits = 0;
+        int     significant = 0;    // digits gathered after the leading zeros
+        int     scale = 0;          // value = digits / 10^scale
+        boolean period = false;
+        boolean exact = true;       // no digit but zeros was left out of digits
+        for (int i = 0; i < length; i++)
+        {
+            char c = at(i);
+            if (c == '.' && !period)
+            {
+                period = true;
+                continue;
+            }
+            int d = c - '0';
+            if (d < 0 || d > 9)
+                throw new NumberFormatException("not a number: " + this);
+            if (significant < 18)
+            {
+                digits = digits * 10 + d;
+                if (digits != 0)
+                    significant++;
+                if (period)
+                    scale++;
+            }
+            else
+            {
+                exact &= d == 0;
+                if (!period)
+                    scale--;
+            }
+        }
+        if (length == 0 || (period && length == 1))
+            throw new NumberFormatException("not a number: " + this);
+        if (exact && digits < 1L << 53)
+        {
+            if (scale >= 0 && scale < POWERS.length)
+                return digits / POWERS[scale];
+            if (scale < 0 && -scale < POWERS.length)
+                return digits * POWERS[-scale];
+        }
+        return Double.parseDouble(toString());
+    }
+
+    // the number as a fixed-point value with scale digits after the period, that is the number times 10^scale.
+    // digits beyond scale are rounded half to even, like BigDecimal.setScale(scale, HALF_EVEN).
+    // ArithmeticException when the value does not fit in a long.
+    public long scaledValue(int scale)
+    {
+        if (scale < 0)
+            throw new IllegalArgumentException("negative scale " + scale);
+        long    value = 0;
+        int     fraction = -1;      // digits after the period so far, -1 before it
+        int     first = 0;          // the first digit dropped
+        boolean rest = false;       // a digit after it was not 0
+        boolean any = false;
+        for (int i = 0; i < length; i++)
+        {
+            char c = at(i);
+            if (c == '.' && fraction < 0)
+            {
+                fraction = 0;
+                continue;
+            }
+            int d = c - '0';
+            if (d < 0 || d > 9)
+                throw new NumberFormatException("not a number: " + this);
+            any = true;
+            if (fraction >= scale)
+            {
+                if (fraction == scale)
+                    first = d;
+                else
+                    rest |= d != 0;
+                fraction++;
+                continue;
+            }
+            value = Math.addExact(Math.multiplyExact(value, 10), d);
+            if (fraction >= 0)
+                fraction++;
+        }
+        if (!any)
+            throw new NumberFormatException("not a number: " + this);
+        for (int f = Math.max(fraction, 0); f < scale; f++)
+            value = Math.multiplyExact(value, 10);
+        if (first > 5 || (first == 5 && (rest || (value & 1) != 0)))
+            value = Math.addExact(value, 1);
+        return value;
+    }
+
+    public String toString()
+    {
+        if (chars != null)
+            return new String(chars, offset, length);
+        if (text != null)
+            return text.subSequence(offset, offset + length).toString();
+        char[] c = new char[length];
+        for (int i = 0; i < length; i++)
+            c[i] = (char)bytes.get(offset + i);
+        return new String(c);
+    }
+}
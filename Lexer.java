@@ -1,43 +1,219 @@
 public class Lexer
 {
     private static final char EOF        =  0;
+    private static final char NON_ASCII  =  0xFFFD; // stands in for any multi-byte character of a mapped file
 
-    private Parser         yyparser; // parent parser object
+    static final char[] NOT_EQUAL = {'!', '='};
+    static final char[] LESS_THAN = {'<'};
+
+    Parser                 yyparser; // parent parser object
     private java.io.Reader reader;   // input stream
+    private TextReader     text;     // reader of the last reset(CharSequence), reused by the next one
     public int             lineno;   // line number
     public int             column;   // column
 
-    int forward = 0;                // only ever updated in readCharFromBuffer() and reloadBuffer()
+    // token cursor, filled in by next() together with lineno and column.
+    public int             tokenKind;   // token-name, 0 at the end of file and -1 on a lexical error
+    public int             tokenStart;  // offset of the lexeme in the input, in characters (bytes for a mapped file)
+    public int             tokenLength; // length of the lexeme
+    public int             tokenSymbol; // id of an ID token in symbols, -1 for any other token
+    public SymbolTable     symbols = new SymbolTable();   // identifiers of this lexer, may be shared between lexers, or null to keep none
+    public LexicalErrors   errors;  // when set, errors are recorded here and lexing goes on behind them
+    int                    failure; // LexicalErrors category of the error next() is failing on
+    boolean                recovering;  // inside Fail(), lexing on behind an error
+    static final int       RETRY = -2;
+    char[]                 tokenConstant;   // fixed lexeme of a token that does not read as its input
+    int                    reloads;     // counted when LexerMetrics.ENABLED
+    int                    retracts;
+    final int[]            kindCounts = LexerMetrics.ENABLED ? new int[Parser.tokens.length] : null;
+    final Lexeme           lexeme = new Lexeme();
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    public static final int VERSION = 1;    // change when the tokens read from the same input change, TokenCache keys on it
+
+    int forward = -1;               // index in bufferOne of the last character read. only ever updated in readCharFromBuffer(), reloadBuffer() and retract()
     int lexBegin = 0;               // should only be updated when switching states. 
     int accumulator = 1;            // always increments with column, with the exception that accumulator is never set to lexBegin. 
+    int lexStart = -1;              // offset of the lexeme being read, -1 between lexemes.
+
+    // sentinel pair: bufferOne is the active block, bufferTwo the block before it (or after it, following a retract across the boundary).
+    // each block holds up to blockSize characters and is terminated by an EOF sentinel at its limit.
+    final int blockSize;
+    char[] bufferOne;
+    char[] bufferTwo;
+    int limitOne = 0;               // position of the sentinel in bufferOne
+    int limitTwo = 0;               // position of the sentinel in bufferTwo
+    int baseOne = 0;                // offset in the input of bufferOne[0]
+    int baseTwo = 0;                // offset in the input of bufferTwo[0]
+    boolean twoIsAhead = false;     // true after retracting into the previous block: bufferTwo then already holds the input that follows bufferOne
+    boolean endOfInput = false;     // reader has returned -1
 
-    char[] bufferOne = new char[10];
-    char[] bufferTwo = new char[10];
-    boolean currentBuffer = false; // false = second, true = first 
-    boolean firstLoad = true;
+    // characters of a lexeme longer than the part still held in the blocks.
+    char[] spill = new char[64];
+    int spillLength = 0;
 
-    String[] keywords = {"int ", "print ", "var ", "func ", "if ", "else ", "while ", "void "};
+    // mapped mode: the whole file is scanned as bytes, forward is the position of the last byte of the last character read.
+    java.nio.MappedByteBuffer mapped;
+    int mappedLimit;
+
+    static final String[] keywords      = {"int", "print", "var", "func", "if", "else", "while", "void"};
+    static final int[]    keywordTokens = {Parser.INT, Parser.PRINT, Parser.VAR, Parser.FUNC, Parser.IF, Parser.ELSE, Parser.WHILE, Parser.VOID};
+
+    // char-indexed trie over the keywords, walked while an identifier is read (state 100).
+    // node 0 is dead: no keyword continues that way, and it has no way out. node 1 is the root.
+    static final int     KEYWORD_LENGTH = 5;    // of the longest keyword
+    static final short[] keywordTrie;    // keywordTrie[node * 26 + c - 'a'] = next node
+    static final byte[]  keywordToken;   // token-name of the keyword ending at a node, 0 if none does
+    static
+    {
+        int nodes = 2;
+        for (String k : keywords)
+            nodes += k.length();
+        short[] trie  = new short[nodes * 26];
+        byte[]  token = new byte[nodes];
+        int used = 2;
+        for (int i = 0; i < keywords.length; i++)
+        {
+            int node = 1;
+            for (char c : keywords[i].toCharArray())
+            {
+                int edge = node * 26 + c - 'a';
+                if (trie[edge] == 0)
+                    trie[edge] = (short)used++;
+                node = trie[edge];
+            }
+            token[node] = (byte)keywordTokens[i];
+        }
+        keywordTrie  = java.util.Arrays.copyOf(trie, used * 26);
+        keywordToken = java.util.Arrays.copyOf(token, used);
+    }
 
     public Lexer(java.io.Reader reader, Parser yyparser) throws Exception
     {
-        this.reader   = reader;
-        this.yyparser = yyparser;
+        this(reader, yyparser, DEFAULT_BLOCK_SIZE);
+    }
+
+    public Lexer(java.io.Reader reader, Parser yyparser, int blockSize) throws Exception
+    {
+        if (blockSize < 1)
+            throw new IllegalArgumentException("block size must be positive: " + blockSize);
+        this.reader    = reader;
+        this.yyparser  = yyparser;
+        this.blockSize = blockSize;
+        bufferOne = new char[blockSize + 1];
+        bufferTwo = new char[blockSize + 1];
+        bufferOne[0] = EOF;         // empty block, the first read triggers reloadBuffer()
         lineno = 1;
         column = 1;
     }
 
-    
-    public char NextChar() throws Exception
+    // lex a file straight from its mapped bytes, without a Reader or any charset decoding.
+    // every MinC token is ASCII, a non-ASCII byte sequence is read as a single character the lexer does not accept,
+    // which reports the same errors and positions as the decoded UTF-8 characters do.
+    public Lexer(java.nio.file.Path path, Parser yyparser) throws Exception
     {
-        int data = reader.read();
-        if(data == -1)
+        this(map(path), 0, -1, 1, yyparser);
+    }
+
+    // lex the mapped bytes from start up to end (the whole buffer for -1), counting lines from lineno.
+    // start has to be the beginning of a line, the lexer is always in state 0 with column 1 there.
+    Lexer(java.nio.MappedByteBuffer mapped, int start, int end, int lineno, Parser yyparser)
+    {
+        this.mapped      = mapped;
+        this.mappedLimit = end < 0 ? mapped.limit() : end;
+        this.forward     = start - 1;
+        this.yyparser    = yyparser;
+        this.blockSize   = 0;
+        this.lineno      = lineno;
+        column = 1;
+    }
+
+    // lex another input with the blocks, symbols and errors this lexer already has, as if it had just been built.
+    // the symbol table and the error list are cleared, nothing is allocated unless the new input needs more room.
+    public void reset(java.io.Reader reader)
+    {
+        if (mapped != null)
+            throw new IllegalStateException("a lexer of a mapped file has no blocks to read another input into");
+        this.reader = reader;
+        lineno        = 1;
+        column        = 1;
+        tokenKind     = 0;
+        tokenStart    = 0;
+        tokenLength   = 0;
+        tokenSymbol   = -1;
+        tokenConstant = null;
+        failure       = 0;
+        recovering    = false;
+        forward       = -1;
+        lexBegin      = 0;
+        accumulator   = 1;
+        lexStart      = -1;
+        limitOne      = 0;
+        limitTwo      = 0;
+        baseOne       = 0;
+        baseTwo       = 0;
+        twoIsAhead    = false;
+        endOfInput    = false;
+        spillLength   = 0;
+        bufferOne[0]  = EOF;
+        if (symbols != null)
+            symbols.clear();
+        if (errors != null)
+            errors.clear();
+        if (LexerMetrics.ENABLED)
         {
-            return EOF;
+            reloads  = 0;
+            retracts = 0;
+            java.util.Arrays.fill(kindCounts, 0);
         }
-        return (char)data;
     }
-    public int Fail()
+
+    public void reset(CharSequence input)
     {
+        if (text == null)
+            text = new TextReader(input, 0);
+        else
+            text.reset(input, 0);
+        reset(text);
+    }
+
+    static java.nio.MappedByteBuffer map(java.nio.file.Path path) throws Exception
+    {
+        try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(path))
+        {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new java.io.IOException(path + " is too large to map (" + size + " bytes)");
+            return channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    // in recovery mode the error is recorded and lexing goes on with the next token, which is returned instead.
+    // the error paths of next() only set failure and call this, so the error-free path stays as it is.
+    public int Fail() throws Exception
+    {
+        if (errors != null && recover(failure))
+        {
+            if (recovering)
+                return RETRY;   // an error right behind another one, the outer Fail() goes on
+            recovering = true;
+            try
+            {
+                int token;
+                while ((token = next()) == RETRY)
+                    ;
+                return token;
+            }
+            finally
+            {
+                recovering = false;
+            }
+        }
+        tokenKind   = -1;
+        tokenStart  = position();
+        tokenLength = 0;
+        tokenSymbol = -1;
+        lexStart    = -1;
         return -1;
     }
 
@@ -47,7 +223,84 @@ public class Lexer
     //   1. set token-attribute into yyparser.yylval
     //   2. return token-id defined in Parser
     //   token attribute can be lexeme, line number, colume, etc.
+    // yylex() is the ParserVal adapter over next(), it allocates an attribute object for every token.
+    // yylval.ival holds the symbol id of an ID token. for a NUM, dval holds its value and ival too when it is
+    // an integer that fits in an int, -1 otherwise.
     public int yylex() throws Exception
+    {
+        int token = next();
+        if (token > 0)
+        {
+            yyparser.yylval = new ParserVal(attribute());
+            yyparser.yylval.ival = tokenSymbol;
+            if (token == Parser.NUM)
+            {
+                double value = doubleValue();
+                yyparser.yylval.dval = value;
+                if (value <= Integer.MAX_VALUE && lexeme.isInteger())
+                    yyparser.yylval.ival = (int)value;
+            }
+        }
+        return token;
+    }
+
+    // the value of the current NUM token, decoded from the input like lexeme() reads it. see Lexeme.
+    public int intValue()
+    {
+        lexeme();
+        return lexeme.intValue();
+    }
+
+    public double doubleValue()
+    {
+        lexeme();
+        return lexeme.doubleValue();
+    }
+
+    public long scaledValue(int scale)
+    {
+        lexeme();
+        return lexeme.scaledValue(scale);
+    }
+
+    // the token attribute yylex() used to build: a Character for the single-character punctuation tokens, the lexeme otherwise.
+    public Object attribute()
+    {
+        if (tokenLength == 1 && tokenConstant == null)
+        {
+            char c = lexeme().charAt(0);
+            switch (c)
+            {
+                case '(' : case ')' : case '{' : case '}' : case '=' : case '*' : case ';' : case ',' : case '/' :
+                    return Character.valueOf(c);
+            }
+        }
+        return lexeme().toString();
+    }
+
+    // the characters of the current token. the view is reused, and only valid until the next call to next().
+    public CharSequence lexeme()
+    {
+        if (tokenConstant != null)
+            return lexeme.set(tokenConstant, 0, tokenConstant.length);
+        if (mapped != null)
+            return lexeme.set(mapped, tokenStart, tokenLength);
+        int end = tokenStart + tokenLength;
+        if (spillLength == 0 && tokenStart >= baseOne && end <= baseOne + limitOne)
+            return lexeme.set(bufferOne, tokenStart - baseOne, tokenLength);
+        if (spillLength == 0 && tokenStart >= baseTwo && end <= baseTwo + limitTwo)
+            return lexeme.set(bufferTwo, tokenStart - baseTwo, tokenLength);
+        // the token crosses a block boundary, assemble it behind whatever reloadBuffer() saved already.
+        if (spillLength < tokenLength)
+        {
+            spillLexeme(tokenStart, end);
+        }
+        return lexeme.set(spill, 0, tokenLength);
+    }
+
+    // the same state machine as yylex(), but the token is only recorded in the cursor fields
+    // tokenKind, tokenStart, tokenLength, lineno and column, and read through lexeme(). nothing is allocated per token.
+    public int next() throws Exception
     {
 
         /*
@@ -61,11 +314,7 @@ public class Lexer
          * Always increment accumulator after a character is read.
          */
         int state = 0;
-        StringBuilder builder = new StringBuilder();
-
-        if (firstLoad)
-            reloadBuffer();
-        firstLoad = false;
+        int keyword = 0;    // keyword trie node of the identifier being read
 
         while(true)
         {
@@ -73,7 +322,7 @@ public class Lexer
 
             column = accumulator;
 
-            if (c == EOF && forward != 9) {state = 9999;}
+            if (c == EOF) {state = 9999;}   // block sentinels never reach here, readCharFromBuffer() reloads past them
 
             boolean isUppercaseLetter = (c >= 65 && c <= 90);
             boolean isLowercaseLetter = (c >= 97 && c <= 122);
@@ -89,17 +338,18 @@ public class Lexer
                     
                 if (isLowercaseLetter || isUppercaseLetter) // first character is an alphabetical.
                     {
-                        lexBegin = accumulator;
+                        startLexeme();
                         accumulator++;
-                        builder.append(c); 
+                        accumulator += scanIdentifier();
+                        keyword = keywordNode();
                         state = 100;
                         continue;
                     }
                     else if (isNumber) // first character read is a number.
                     {
-                        lexBegin = accumulator;
+                        startLexeme();
                         accumulator++;
-                        builder.append(c);
+                        accumulator += scanDigits();
                         state = 1000;
                         continue;
                     }
@@ -108,12 +358,14 @@ public class Lexer
                         if (c == 32) // whitespace is just 1 space
                         {
                             accumulator++;
+                            accumulator += scanBlanks();
                             continue;
                         }
                         else if (c == 9) // whitespace is a tab, not just a space. unless you're na, where tab just equals 1 fucking space for some reason.
                         {
                             accumulator++;
                             //accumulator += 5;
+                            accumulator += scanBlanks();
                             continue;
                         }
                     }
@@ -127,79 +379,69 @@ public class Lexer
                     else if (c == '(')
                     {
                         accumulator++;
-                        yyparser.yylval = new ParserVal((Object)'(');
-                        return Parser.LPAREN;   
+                        return single(Parser.LPAREN);
                     }
                     else if (c == ')')
                     {
                         accumulator++;
-                        yyparser.yylval = new ParserVal((Object)')');
-                        return Parser.RPAREN;   
+                        return single(Parser.RPAREN);
                     }
                     else if (c == '{')
                     {
                         accumulator++;
-                        yyparser.yylval = new ParserVal((Object)'{');
-                        return Parser.BEGIN;
+                        return single(Parser.BEGIN);
                     }
                     else if (c == '}')
                     {
                         accumulator++;
-                        yyparser.yylval = new ParserVal((Object)'}');
-                        return Parser.END;
+                        return single(Parser.END);
                     }
                     else if (c == '_')
                     {
-                        return -1;
+                        failure = LexicalErrors.UNDERSCORE;
+                        return Fail();
                     }
                     else if (c == '<')
                     {
-                        lexBegin = accumulator;
+                        startLexeme();
                         accumulator++;
                         state = 200;
-                        builder.append(c);
                         continue;
                     }
                     else if (c == '>')
                     {
-                        lexBegin = accumulator;
+                        startLexeme();
                         accumulator++;
                         state = 201;
-                        builder.append(c);
                         continue;
                     }
                     else if (c == '=')
                     {
                         accumulator++;
-                        yyparser.yylval = new ParserVal((Object)'=');
-                        return Parser.RELOP;
+                        return single(Parser.RELOP);
                     }
                     else if (c == '-')
                     {
-                        lexBegin = accumulator;
+                        startLexeme();
                         accumulator++;
                         state = 202;
-                        builder.append(c);
                         continue;
                     }
                     else if (c == '+')
                     {
                         accumulator++;
-                        yyparser.yylval = new ParserVal((Object)"+");
-                        return Parser.OP;
+                        return single(Parser.OP);
                     }
                     else if (c == '*')
                     {
                         accumulator++;
-                        yyparser.yylval = new ParserVal((Object)'*');
-                        return Parser.OP;
+                        return single(Parser.OP);
                     }
                     else if (c == '/')
                     {
-                        lexBegin = accumulator;
+                        startLexeme();
                         accumulator++;
                         state = 203;
-                        builder.append(c);
                         continue;
                     }
                     else if (c == ';')
@@ -207,30 +449,29 @@ public class Lexer
                         lexBegin = accumulator;
                         accumulator++;
                         column = lexBegin;
-                        yyparser.yylval = new ParserVal((Object)';');
-                        return Parser.SEMI;
+                        return single(Parser.SEMI);
                     }
                     else if (c == ':')
                     {
-                        lexBegin = accumulator;
+                        startLexeme();
                         accumulator++;
                         state = 2; continue;
                     }
                     else if (c == '!')
                     {
-                        lexBegin = accumulator;
+                        startLexeme();
                         accumulator++;
                         state = 3; continue;
                     }
                     else if (c == ',')
                     {
                         accumulator++;
-                        yyparser.yylval = new ParserVal((Object)',');
-                        return Parser.COMMA;
+                        return single(Parser.COMMA);
                     }
                     else if (c == '.') // comma cannot be the first character read from whitespace
                     {
-                        return -1;
+                        failure = LexicalErrors.PERIOD;
+                        return Fail();
                     }
                     break; // <-- safety measure, just in case all if statements evaluate false for whatever reason. 
                     
@@ -241,8 +482,7 @@ public class Lexer
                         column = lexBegin;
                         lexBegin = accumulator;
                         state = 0;
-                        yyparser.yylval = new ParserVal((Object)"::");
-                        return Parser.TYPEOF;
+                        return token(Parser.TYPEOF);
                     }
                 case 3 :    // character is !
                 {
@@ -251,17 +491,22 @@ public class Lexer
                         accumulator++;
                         column = lexBegin;
                         lexBegin = accumulator;
+                        if (state == 2)     // fell through from case 2, ":=" is reported as "!=" as well
+                        {
+                            state = 0;
+                            return constant(Parser.RELOP, NOT_EQUAL);
+                        }
                         state = 0;
-                        yyparser.yylval = new ParserVal((Object)"!=");
-                        return Parser.RELOP;
+                        return token(Parser.RELOP);
                     }
                     else // idk why ! would ever be by itself, and it doesn't seem to ever occur in the tests. it just returns an error instead.
                     {
                         accumulator++;
                         column = lexBegin;
                         lexBegin = accumulator;
+                        failure = state == 2 ? LexicalErrors.COLON : LexicalErrors.BANG;
                         state = 0;
-                        return -1;
+                        return Fail();
                     }
                 }
                 case 100 :  // case of a alphabetic character being the first read.
@@ -270,7 +515,7 @@ public class Lexer
                     if (isLowercaseLetter || isUppercaseLetter || isNumber || c == '_') 
                     {
                         accumulator++;
-                        builder.append(c);
+                        keyword = keywordStep(keyword, c);
                         continue;
                     }
                     // must be a keyword/id
@@ -280,42 +525,16 @@ public class Lexer
                         column = lexBegin;
                         lexBegin = accumulator;                        
                         state = 0;
-                        builder.append(c);
                         retract();
-
+                        return token(keywordToken[keyword] != 0 ? keywordToken[keyword] : Parser.ID);
+                    }
+                    else    // falls through to case 200, which reports anything else ending an identifier as "<"
+                    {
+                        column = lexBegin;
+                        lexBegin = accumulator;
                         state = 0;
-                        switch (builder.substring(0,builder.length()-1))
-                        {
-                            case "int" :
-                                yyparser.yylval = new ParserVal((Object)"int");
-                                return Parser.INT;
-                            case "print" :
-                                yyparser.yylval = new ParserVal((Object)"print");
-                                return Parser.PRINT;
-                            case "var" :
-                                yyparser.yylval = new ParserVal((Object)"var");
-                                return Parser.VAR;
-                            case "func" :
-                                yyparser.yylval = new ParserVal((Object)"func");
-                                return Parser.FUNC;
-                            case "if" :
-                                yyparser.yylval = new ParserVal((Object)"if");
-                                return Parser.IF;
-                            case "else" :
-                                yyparser.yylval = new ParserVal((Object)"else");
-                                return Parser.ELSE;
-                            case "while" :
-                                yyparser.yylval = new ParserVal((Object)"while");
-                                return Parser.WHILE;
-                            case "void" :
-                                yyparser.yylval = new ParserVal((Object)"void");
-                                return Parser.VOID;
-                            
-                            // the lexeme is an id, not a keyword.
-                            default :
-                                yyparser.yylval = new ParserVal((Object)builder.toString().substring(0,builder.length() - 1));
-                                return Parser.ID;
-                        }
+                        retract();
+                        return constant(Parser.RELOP, LESS_THAN);
                     }
                 case 200 :  // character read before is a <
                 {
@@ -325,8 +544,7 @@ public class Lexer
                         column = lexBegin;
                         lexBegin = accumulator;
                         state = 0;
-                        yyparser.yylval = new ParserVal((Object)"<=");
-                        return Parser.RELOP;
+                        return token(Parser.RELOP);
                     }
                     else if (c == '-')
                     {
@@ -334,8 +552,7 @@ public class Lexer
                         column = lexBegin;
                         lexBegin = accumulator;
                         state = 0;
-                        yyparser.yylval = new ParserVal((Object)"<-");
-                        return Parser.ASSIGN;
+                        return token(Parser.ASSIGN);
                     }
                     else
                     {
@@ -343,8 +560,7 @@ public class Lexer
                         lexBegin = accumulator;
                         state = 0;
                         retract();
-                        yyparser.yylval = new ParserVal((Object)"<"); 
-                        return Parser.RELOP;
+                        return token(Parser.RELOP);
                     }
                 }
                 case 201 :  // character read before is a >
@@ -355,8 +571,7 @@ public class Lexer
                         column = lexBegin;
                         lexBegin = accumulator;
                         state = 0;
-                        yyparser.yylval = new ParserVal((Object)">=");
-                        return Parser.RELOP;
+                        return token(Parser.RELOP);
                     }
                     else
                     {
@@ -364,8 +579,7 @@ public class Lexer
                         lexBegin = accumulator;
                         state = 0;
                         retract();
-                        yyparser.yylval = new ParserVal((Object)">"); 
-                        return Parser.RELOP;
+                        return token(Parser.RELOP);
                     }
                 }
                 case 202 :  // character read before is a -
@@ -376,8 +590,7 @@ public class Lexer
                         column = lexBegin;
                         lexBegin = accumulator;
                         state = 0;
-                        yyparser.yylval = new ParserVal((Object)"->");
-                        return Parser.FUNCRET;
+                        return token(Parser.FUNCRET);
                     }
                     else 
                     {
@@ -385,8 +598,7 @@ public class Lexer
                         lexBegin = accumulator;
                         state = 0;
                         retract();
-                        yyparser.yylval = new ParserVal((Object)"-");
-                        return Parser.OP;
+                        return token(Parser.OP);
                     }
                 }
                 
@@ -397,7 +609,9 @@ public class Lexer
                         accumulator = 1;
                         lineno++;
                         lexBegin = 0;
+                        lexStart = -1;
                         state = 300;
+                        scanComment();
                         continue;
                     }
                     else
@@ -406,8 +620,7 @@ public class Lexer
                         lexBegin = accumulator;
                         state = 0;
                         retract();
-                        yyparser.yylval = new ParserVal((Object)'/');
-                        return Parser.OP;
+                        return token(Parser.OP);
                     }
                 }
                 case 300 :  // make sure to ignore comments.
@@ -415,22 +628,25 @@ public class Lexer
                     if (c == '\n')
                     {
                         state = 0;
-                        continue;
                     }
+                    else
+                    {
+                        scanComment();  // the rest of a comment that went on in the next block
+                    }
+                    continue;
                 }
                 case 1000 : // case of a number being the first read. 
                     
                     if (isPeriod)
                     {
                         accumulator++;
-                        builder.append(c);
+                        accumulator += scanDigits();
                         state = 1001;
                         continue;
                     }
                     else if (isNumber)
                     {
                         accumulator++;
-                        builder.append(c);
                         continue;
                     }
                     else // anything at all has interrupted the token. retract 1 to account for the interrupt.
@@ -438,10 +654,8 @@ public class Lexer
                         column = lexBegin;
                         lexBegin = accumulator;
                         state = 0;
-                        builder.append(c);
                         retract();
-                        yyparser.yylval = new ParserVal((Object)builder.toString().substring(0,builder.length()-1));
-                        return Parser.NUM;
+                        return token(Parser.NUM);
                     }
 
                 case 1001 : // case of a number then a period, make sure period doesn't happen again.
@@ -452,24 +666,20 @@ public class Lexer
                         column = lexBegin;
                         lexBegin = accumulator;
                         state = 0;
-                        builder.append(c);
                         retract();
-                        yyparser.yylval = new ParserVal((Object)builder.toString().substring(0,builder.length()-1));
                         // make sure there isn't a valid number here, as it could still be registered as a token.
                         // i.e. 3.. <-- invalid | 123.456.789 <-- "valid"
-                        if (builder.length() >= 2                               &&
-                            builder.toString().charAt(builder.length()-2) >= 48 &&
-                            builder.toString().charAt(builder.length()-2) <= 57   )
+                        if (isNumber(charAt(position())))
                             {
                                 accumulator--;
-                                return Parser.NUM;
+                                return token(Parser.NUM);
                             }
-                        return -1;
+                        failure = LexicalErrors.NUMBER;
+                        return Fail();
                     }
                     else if (isNumber)
                     {
                         accumulator++;
-                        builder.append(c);
                         continue;
                     }
                     else // anything at all has ended the token. retract 1 to account for the interrupt.
@@ -477,76 +687,422 @@ public class Lexer
                         column = lexBegin;
                         lexBegin = accumulator;
                         state = 0;
-                        builder.append(c);
                         retract();
-                        yyparser.yylval = new ParserVal((Object)builder.toString().substring(0,builder.length()-1));
-                        return Parser.NUM;
+                        return token(Parser.NUM);
                     }
                 }
                 case 9999 : // end of file
-                    return EOF;
+                    return endOfFile();
             }
         }
     }
-    
-    // populate both buffers with the next 20 characters.
-    void reloadBuffer() throws Exception
+
+    // record the error at lineno:column and move on to where lexing can go on.
+    // returns false when there is no room for more errors, and next() fails as it does without recovery.
+    //   UNDERSCORE, PERIOD  the character was read but not counted, skip it and the identifier or number it starts
+    //   BANG, COLON         the character after the operator was read and counted, give it back
+    //   NUMBER              the input is back at the first '.' of "3..", but both were counted: skip the rest of it
+    boolean recover(int category) throws Exception
     {
-        if (!currentBuffer)  // first buffer currently active, populate bufferTwo
+        if (!errors.add(category, lineno, column, position()))
+            return false;
+        lexStart = -1;
+        switch (category)
         {
-            for (int i = 0; i < 9; i++)
-            {
-                bufferOne[i] = NextChar();     
-            }
-            bufferOne[9] = EOF;
+            case LexicalErrors.UNDERSCORE :
+            case LexicalErrors.PERIOD :
+                accumulator++;
+                skipWord();
+                break;
+            case LexicalErrors.BANG :
+            case LexicalErrors.COLON :
+                retract();
+                accumulator--;
+                break;
+            case LexicalErrors.NUMBER :
+                accumulator--;
+                skipWord();
+                break;
         }
-        else if (currentBuffer) // second buffer currently active, populate bufferOne
+        lexBegin = accumulator;
+        return true;
+    }
+
+    // skip letters, digits, '_' and '.' up to the next character that can start or end a token.
+    // the end of the input is not read as a character, there is nothing to give back there.
+    void skipWord() throws Exception
+    {
+        while (true)
         {
-            for (int i = 0; i < 9; i++)
+            int before = position();
+            char c = readCharFromBuffer();
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '.')
             {
-                bufferTwo[i] = NextChar();
+                accumulator++;
+                continue;
             }
-            bufferTwo[9] = EOF;
+            if (position() != before)
+                retract();
+            return;
         }
-        currentBuffer = !currentBuffer;
-        forward = -1;       // go to before the start of the current buffer before reading.
     }
 
-    void retract() {forward --;} // subtract 1 from forward.
+    int endOfFile()
+    {
+        tokenKind   = 0;
+        tokenStart  = position();
+        tokenLength = 0;
+        tokenSymbol = -1;
+        lexStart    = -1;
+        return 0;
+    }
 
-    char readCharFromBuffer() throws Exception
+    // a lexeme of more than one character starts at the character just read.
+    void startLexeme()
     {
-        forward++;
-        char c = EOF;
-        if (!currentBuffer)
+        lexBegin    = accumulator;
+        lexStart    = position();
+        spillLength = 0;
+    }
+
+    // the token is the character just read.
+    int single(int kind)
+    {
+        if (LexerMetrics.ENABLED)
+            kindCounts[kind - 10]++;    // indexed like Parser.tokens
+        tokenKind     = kind;
+        tokenStart    = position();
+        tokenLength   = 1;
+        tokenSymbol   = -1;
+        tokenConstant = null;
+        spillLength   = 0;
+        return kind;
+    }
+
+    // the token runs from startLexeme() up to the character just read, or the one before it after a retract().
+    int token(int kind)
+    {
+        if (LexerMetrics.ENABLED)
+            kindCounts[kind - 10]++;    // indexed like Parser.tokens
+        tokenKind     = kind;
+        tokenStart    = lexStart;
+        tokenLength   = position() - lexStart + 1;
+        tokenSymbol   = -1;
+        tokenConstant = null;
+        lexStart      = -1;
+        if (kind == Parser.ID && symbols != null)
+            tokenSymbol = symbols.intern(lexeme());
+        return kind;
+    }
+
+    // a token reported with a fixed lexeme rather than the characters it was read from.
+    int constant(int kind, char[] text)
+    {
+        token(kind);
+        tokenConstant = text;
+        return kind;
+    }
+
+    // the keyword trie node of the identifier from lexStart up to the last character read.
+    // no keyword is longer than KEYWORD_LENGTH, so a longer identifier is in the dead node without looking.
+    int keywordNode()
+    {
+        int end = position();
+        if (end - lexStart >= KEYWORD_LENGTH)
+            return 0;
+        int node = 1;
+        for (int i = lexStart; i <= end; i++)
+            node = keywordStep(node, charAt(i));
+        return node;
+    }
+
+    // fast paths for the runs most input is made of: blanks, identifiers, digits and comment bodies.
+    // each one moves forward over characters next() would only count, up to the first one that ends the run,
+    // so next() reads that one itself and goes on as it would have. the sentinel of the block, a NUL and the end of
+    // a mapped file end every run, whatever happens at a boundary happens in the state machine.
+    // a block is scanned a char at a time, without the state machine. a mapped file is scanned 8 bytes at a time,
+    // with masks that have the high bit of every byte that ends the run set (SWAR). bytes of multi-byte characters end
+    // every run but a comment, where readCharFromMapped() would pass them over just the same.
+    static final int SCAN_BLANKS     = 0;
+    static final int SCAN_IDENTIFIER = 1;
+    static final int SCAN_DIGITS     = 2;
+    static final int SCAN_COMMENT    = 3;
+
+    static final long ONES = 0x0101010101010101L;
+    static final long HIGH = 0x8080808080808080L;
+    static final long LOW  = 0x7F7F7F7F7F7F7F7FL;
+
+    // spaces and tabs, returns how many columns they take.
+    int scanBlanks()
+    {
+        if (mapped != null)
+            return scanMapped(SCAN_BLANKS);
+        char[] b = bufferOne;
+        int i = forward + 1;
+        while (b[i] == ' ' || b[i] == '\t')
+            i++;
+        return skipTo(i);
+    }
+
+    // letters, digits and '_' after the first letter of an identifier, returns how many.
+    int scanIdentifier()
+    {
+        if (mapped != null)
+            return scanMapped(SCAN_IDENTIFIER);
+        char[] b = bufferOne;
+        int i = forward + 1;
+        while (true)
         {
-            if (bufferTwo[forward] == EOF && forward == 9)
+            char c = b[i];
+            if (((c | 0x20) >= 'a' && (c | 0x20) <= 'z') || (c >= '0' && c <= '9') || c == '_')
+                i++;
+            else
+                break;
+        }
+        return skipTo(i);
+    }
+
+    int scanDigits()
+    {
+        if (mapped != null)
+            return scanMapped(SCAN_DIGITS);
+        char[] b = bufferOne;
+        int i = forward + 1;
+        while (b[i] >= '0' && b[i] <= '9')
+            i++;
+        return skipTo(i);
+    }
+
+    // up to the '\n' that ends the comment.
+    void scanComment()
+    {
+        if (mapped != null)
+        {
+            scanMapped(SCAN_COMMENT);
+            return;
+        }
+        char[] b = bufferOne;
+        int i = forward + 1;
+        while (b[i] != '\n' && b[i] != EOF)
+            i++;
+        skipTo(i);
+    }
+
+    // make the character before index i of bufferOne the last one read.
+    int skipTo(int i)
+    {
+        int n = i - 1 - forward;
+        forward = i - 1;
+        return n;
+    }
+
+    int scanMapped(int run)
+    {
+        int from = forward + 1;
+        int i = from;
+        while (true)
+        {
+            long stop = stops(i + 8 <= mappedLimit ? mapped.getLong(i) : tail(i), run);
+            if (stop != 0)
             {
-                reloadBuffer();
-                forward++;
-                c = bufferOne[forward]; // read from 0 at bufferTwo.
+                i += Long.numberOfLeadingZeros(stop) >>> 3;     // big-endian, the first byte is the highest
+                break;
             }
-            else 
-                c = bufferTwo[forward];
+            i += 8;
         }
-        else if (currentBuffer)
+        forward = i - 1;
+        return i - from;
+    }
+
+    // the bytes from i up to mappedLimit as a big-endian word, with zeros after mappedLimit.
+    long tail(int i)
+    {
+        long x = 0;
+        for (int k = 0; k < 8; k++)
+            x = x << 8 | (i + k < mappedLimit ? mapped.get(i + k) & 0xFF : 0);
+        return x;
+    }
+
+    // the high bit of every byte of x that ends the run.
+    static long stops(long x, int run)
+    {
+        switch (run)
         {
-            if (bufferOne[forward] == EOF && forward == 9)
+            case SCAN_BLANKS :
+                return ~(equalBytes(x, ' ') | equalBytes(x, '\t')) & HIGH;
+            case SCAN_IDENTIFIER :
+                return ~(rangeBytes(x | 0x2020202020202020L, 'a', 'z') | rangeBytes(x, '0', '9') | equalBytes(x, '_')) & HIGH;
+            case SCAN_DIGITS :
+                return ~rangeBytes(x, '0', '9') & HIGH;
+            default :
+                return equalBytes(x, '\n') | zeroBytes(x);
+        }
+    }
+
+    // the high bit of every byte of x that is zero. exact, no carry crosses from one byte into the next.
+    static long zeroBytes(long x)
+    {
+        return ~(((x & LOW) + LOW) | x | LOW);
+    }
+
+    static long equalBytes(long x, char c)
+    {
+        return zeroBytes(x ^ (c * ONES));
+    }
+
+    // the high bit of every byte of x from lo up to hi, bytes from 0x80 up are in no range.
+    static long rangeBytes(long x, char lo, char hi)
+    {
+        long low = x & LOW;
+        return (low + (0x80 - lo) * ONES) & ~(low + (0x7F - hi) * ONES) & ~x & HIGH;
+    }
+
+    // follow the edge for c out of a keyword trie node, any character but a lowercase letter ends in the dead node.
+    static int keywordStep(int node, char c)
+    {
+        return c >= 'a' && c <= 'z' ? keywordTrie[node * 26 + c - 'a'] : 0;
+    }
+
+    static boolean isNumber(char c)
+    {
+        return c >= 48 && c <= 57;
+    }
+
+    // the input character at an offset that is still held in one of the blocks.
+    char charAt(int offset)
+    {
+        if (mapped != null)
+            return (char)mapped.get(offset);
+        if (offset >= baseOne && offset < baseOne + limitOne)
+            return bufferOne[offset - baseOne];
+        if (offset >= baseTwo && offset < baseTwo + limitTwo)
+            return bufferTwo[offset - baseTwo];
+        return spill[offset - lexStart];    // saved by reloadBuffer() before its block was reused
+    }
+
+    // offset in the input of the last character read.
+    int position()
+    {
+        return mapped != null ? forward : baseOne + forward;
+    }
+
+    // how far into the input lexing got, in characters (bytes for a mapped file).
+    long inputRead()
+    {
+        return position() + 1L;
+    }
+
+    // copy the input between two offsets behind the lexeme characters saved so far.
+    void spillLexeme(int from, int to)
+    {
+        from += spillLength;
+        int length = spillLength + to - from;
+        if (length > spill.length)
+            spill = java.util.Arrays.copyOf(spill, Math.max(length, spill.length * 2));
+        copyBlock(bufferTwo, baseTwo, limitTwo, from, to, spill, spillLength);
+        copyBlock(bufferOne, baseOne, limitOne, from, to, spill, spillLength);
+        spillLength = length;
+    }
+
+    static void copyBlock(char[] block, int base, int limit, int from, int to, char[] dst, int at)
+    {
+        int lo = Math.max(from, base);
+        int hi = Math.min(to, base + limit);
+        if (lo < hi)
+            System.arraycopy(block, lo - base, dst, at + lo - from, hi - lo);
+    }
+    
+    // make the block after bufferOne active, reading it from the stream unless a retract left it loaded already.
+    // returns false at the end of input, leaving both blocks untouched.
+    boolean reloadBuffer() throws Exception
+    {
+        if (LexerMetrics.ENABLED)
+            reloads++;
+        if (!twoIsAhead)
+        {
+            if (endOfInput)
+                return false;
+            if (lexStart >= 0 && lexStart < baseOne)    // the lexeme being read starts in bufferTwo, save it before the block is reused
+                spillLexeme(lexStart, baseOne);
+            int n = reader.read(bufferTwo, 0, blockSize);
+            if (n < 0)
             {
-                reloadBuffer();
-                forward++;
-                c = bufferTwo[forward];
+                endOfInput = true;
+                return false;
             }
-            else
-                c = bufferOne[forward];
+            limitTwo = n;
+            baseTwo  = baseOne + limitOne;
+            bufferTwo[n] = EOF;
         }
-        else 
+        swapBuffers();
+        twoIsAhead = false;
+        forward = -1;       // go to before the start of the new block before reading.
+        return true;
+    }
+
+    void swapBuffers()
+    {
+        char[] b = bufferOne; bufferOne = bufferTwo; bufferTwo = b;
+        int l    = limitOne;  limitOne  = limitTwo;  limitTwo  = l;
+        int o    = baseOne;   baseOne   = baseTwo;   baseTwo   = o;
+    }
+
+    // subtract 1 from forward. forward == -1 still refers to the last character of the previous block,
+    // going further back makes the previous block active again. at most blockSize characters can be retracted
+    // behind the furthest character read.
+    void retract()
+    {
+        if (LexerMetrics.ENABLED)
+            retracts++;
+        if (mapped != null)
         {
-            reloadBuffer();
-            forward++;
-            c = bufferOne[forward];
+            retractMapped();
+            return;
+        }
+        forward--;
+        if (forward < -1 && !twoIsAhead && limitTwo + forward >= 0)
+        {
+            swapBuffers();
+            twoIsAhead = true;
+            forward += limitOne;
+        }
+    }
+
+    char readCharFromBuffer() throws Exception
+    {
+        if (mapped != null)
+            return readCharFromMapped();
+        char c = bufferOne[++forward];
+        while (c == EOF && forward == limitOne) // hit the sentinel, move on to the next block.
+        {
+            if (!reloadBuffer())
+            {
+                forward--;  // stay in front of the sentinel, so every further read returns EOF as well.
+                return EOF;
+            }
+            c = bufferOne[++forward];
         }
         return c;
     }
 
+    char readCharFromMapped()
+    {
+        if (forward + 1 >= mappedLimit)
+            return EOF;     // forward stays on the last byte, every further read returns EOF as well.
+        byte b = mapped.get(++forward);
+        if (b >= 0)
+            return (char)b;
+        while (forward + 1 < mappedLimit && (mapped.get(forward + 1) & 0xC0) == 0x80) // skip continuation bytes
+            forward++;
+        return NON_ASCII;
+    }
+
+    // step back over the whole byte sequence of the last character read.
+    void retractMapped()
+    {
+        while (forward > 0 && (mapped.get(forward) & 0xC0) == 0x80 && mapped.get(forward - 1) < 0)
+            forward--;
+        forward--;
+    }
+
 }
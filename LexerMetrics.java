@@ -0,0 +1,243 @@
+// counters of the lexer: bytes, tokens of every kind, buffer reloads, retracts, errors and the time files took.
+// enabled with -Dminc.metrics=true. ENABLED is a constant, so when it is false the JIT drops the counting
+// in the Lexer along with the branch around it. Compiler.Metrics() has the counters of one Compile(),
+// total adds up every Compile() in the process and is registered over JMX as minc:type=LexerMetrics.
+// files Driver parses with --ast are added to total as well, and so are files whose tokens are replayed instead of
+// read by a Lexer here, from the cache, a .tok file or a ParallelLexer: those count bytes, tokens, errors and time,
+// but no reloads and retracts.
+public class LexerMetrics implements LexerMetricsMXBean
+{
+    public static final boolean ENABLED = Boolean.getBoolean("minc.metrics");
+    public static final LexerMetrics total = new LexerMetrics();
+
+    static final int BUCKETS = 32;      // files by time, bucket i up to 2^i microseconds
+
+    long files;
+    long bytes;
+    long reloads;
+    long retracts;
+    long errors;
+    long nanos;
+    final long[] kinds   = new long[Parser.tokens.length];
+    final long[] latency = new long[BUCKETS];
+
+    static
+    {
+        if (ENABLED)
+        {
+            try
+            {
+                java.lang.management.ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(total, new javax.management.ObjectName("minc:type=LexerMetrics"));
+            }
+            catch (Exception e)
+            {
+                System.err.println("lexer metrics are not available over JMX: " + e);
+            }
+        }
+    }
+
+    // the counters of one file from its lexer, after parsing ended with status.
+    static LexerMetrics of(Lexer lexer, int status, long nanos)
+    {
+        LexerMetrics m = new LexerMetrics();
+        m.files    = 1;
+        m.bytes    = lexer.inputRead();
+        m.reloads  = lexer.reloads;
+        m.retracts = lexer.retracts;
+        m.errors   = lexer.errors != null ? lexer.errors.size() : status < 0 ? 1 : 0;
+        m.nanos    = nanos;
+        for (int i = 0; i < m.kinds.length; i++)
+            m.kinds[i] = lexer.kindCounts[i];
+        m.latency[bucket(nanos)] = 1;
+        return m;
+    }
+
+    // add the counters of a file parsed some other way than by Compile() to total.
+    static void record(Lexer lexer, int status, long nanos)
+    {
+        total.add(of(lexer, status, nanos));
+    }
+
+    // what replay() sends to a sink.
+    interface Replay
+    {
+        int to(TokenSink sink) throws Exception;
+    }
+
+    // replay the tokens of a source of bytes into sink, and add them to total as one file.
+    static int replay(long bytes, TokenSink sink, Replay replay) throws Exception
+    {
+        if (!ENABLED)
+            return replay.to(sink);
+        long start = System.nanoTime();
+        LexerMetrics m = new LexerMetrics();
+        int status = replay.to(new TokenSink()
+        {
+            public void token(int kind, CharSequence lexeme, int line, int column) throws Exception
+            {
+                m.kinds[kind - 10]++;
+                sink.token(kind, lexeme, line, column);
+            }
+
+            public void end(int status, int line, int column) throws Exception
+            {
+                sink.end(status, line, column);
+            }
+
+            public void error(int category, int line, int column) throws Exception
+            {
+                m.errors++;
+                sink.error(category, line, column);
+            }
+
+            public void flush() throws Exception
+            {
+                sink.flush();
+            }
+        });
+        m.files = 1;
+        m.bytes = bytes;
+        m.nanos = System.nanoTime() - start;
+        if (status < 0 && m.errors == 0)
+            m.errors = 1;
+        m.latency[bucket(m.nanos)] = 1;
+        total.add(m);
+        return status;
+    }
+
+    static int bucket(long nanos)
+    {
+        long micros = nanos / 1000;
+        return Math.min(BUCKETS - 1, micros <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1));
+    }
+
+    public synchronized void add(LexerMetrics m)
+    {
+        files    += m.files;
+        bytes    += m.bytes;
+        reloads  += m.reloads;
+        retracts += m.retracts;
+        errors   += m.errors;
+        nanos    += m.nanos;
+        for (int i = 0; i < kinds.length; i++)
+            kinds[i] += m.kinds[i];
+        for (int i = 0; i < BUCKETS; i++)
+            latency[i] += m.latency[i];
+    }
+
+    public synchronized void reset()
+    {
+        files = bytes = reloads = retracts = errors = nanos = 0;
+        java.util.Arrays.fill(kinds, 0);
+        java.util.Arrays.fill(latency, 0);
+    }
+
+    public synchronized long getFiles()
+    {
+        return files;
+    }
+
+    public synchronized long getBytes()
+    {
+        return bytes;
+    }
+
+    public synchronized long getTokens()
+    {
+        long n = 0;
+        for (long k : kinds)
+            n += k;
+        return n;
+    }
+
+    public synchronized long getReloads()
+    {
+        return reloads;
+    }
+
+    public synchronized long getRetracts()
+    {
+        return retracts;
+    }
+
+    public synchronized long getErrors()
+    {
+        return errors;
+    }
+
+    public synchronized long getNanos()
+    {
+        return nanos;
+    }
+
+    // tokens by the names in Parser.tokens.
+    public synchronized java.util.Map<String, Long> getTokensByKind()
+    {
+        java.util.Map<String, Long> m = new java.util.LinkedHashMap<>();
+        for (int i = 0; i < kinds.length; i++)
+            m.put(Parser.tokens[i], kinds[i]);
+        return m;
+    }
+
+    // files by the time they took, keyed by the upper bound of each bucket like "<=64us". empty buckets are left out.
+    public synchronized java.util.Map<String, Long> getLatencyHistogram()
+    {
+        java.util.Map<String, Long> m = new java.util.LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            if (latency[i] != 0)
+                m.put("<=" + (1L << i) + "us", latency[i]);
+        }
+        return m;
+    }
+
+    public long getLatencyP50Micros()
+    {
+        return percentile(0.50);
+    }
+
+    public long getLatencyP99Micros()
+    {
+        return percentile(0.99);
+    }
+
+    public long getLatencyMaxMicros()
+    {
+        return percentile(1.0);
+    }
+
+    // the upper bound of the bucket the percentile falls in.
+    synchronized long percentile(double p)
+    {
+        long count = 0;
+        for (long n : latency)
+            count += n;
+        long rank = (long)Math.ceil(p * count);
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            rank -= latency[i];
+            if (rank <= 0 && latency[i] != 0)
+                return 1L << i;
+        }
+        return 0;
+    }
+
+    public synchronized String toString()
+    {
+        StringBuilder b = new StringBuilder();
+        b.append(String.format("%d files, %d bytes, %d tokens, %d reloads, %d retracts, %d errors in %.3f s%n",
+                               files, bytes, getTokens(), reloads, retracts, errors, nanos / 1e9));
+        b.append("tokens:");
+        for (int i = 0; i < kinds.length; i++)
+        {
+            if (kinds[i] != 0)
+                b.append(' ').append(Parser.tokens[i]).append('=').append(kinds[i]);
+        }
+        b.append(System.lineSeparator()).append("latency:");
+        for (java.util.Map.Entry<String, Long> e : getLatencyHistogram().entrySet())
+            b.append(' ').append(e.getKey()).append('=').append(e.getValue());
+        b.append(String.format(" p50<=%dus p99<=%dus max<=%dus", getLatencyP50Micros(), getLatencyP99Micros(), getLatencyMaxMicros()));
+        return b.toString();
+    }
+}
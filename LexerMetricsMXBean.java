@@ -0,0 +1,29 @@
+// what LexerMetrics shows over JMX, as minc:type=LexerMetrics.
+public interface LexerMetricsMXBean
+{
+    long getFiles();
+
+    long getBytes();
+
+    long getTokens();
+
+    long getReloads();
+
+    long getRetracts();
+
+    long getErrors();
+
+    long getNanos();
+
+    java.util.Map<String, Long> getTokensByKind();
+
+    java.util.Map<String, Long> getLatencyHistogram();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP99Micros();
+
+    long getLatencyMaxMicros();
+
+    void reset();
+}
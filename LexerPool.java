@@ -0,0 +1,82 @@
+// lexers ready to be reset to the next input, for many small inputs where building a Lexer, its blocks and its
+// symbol table costs more than lexing. acquire() hands out a pooled lexer or builds one when none is left,
+// release() keeps it for the next acquire() unless the pool already holds capacity lexers.
+// one LexerPool may be used by many threads at once, a lexer by one thread at a time.
+public class LexerPool
+{
+    public final int capacity;
+    final java.util.concurrent.Callable<Lexer> factory;
+    final Lexer[] free;
+    int count = 0;
+
+    long created = 0;
+    long reused  = 0;
+
+    public LexerPool(int capacity, java.util.concurrent.Callable<Lexer> factory)
+    {
+        if (capacity < 1)
+            throw new IllegalArgumentException("pool capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.factory  = factory;
+        this.free     = new Lexer[capacity];
+    }
+
+    // a pool of Lexers, or TableLexers, with blocks of blockSize characters.
+    public LexerPool(int capacity, boolean table, int blockSize)
+    {
+        this(capacity, () -> table ? new TableLexer(new TextReader("", 0), null, blockSize) : new Lexer(new TextReader("", 0), null, blockSize));
+    }
+
+    // a lexer reset to input, with a Parser of its own for compile().
+    public Lexer acquire(CharSequence input) throws Exception
+    {
+        Lexer lexer = take();
+        if (lexer == null)
+        {
+            lexer = factory.call();
+            new Parser(lexer, null);
+        }
+        lexer.reset(input);
+        return lexer;
+    }
+
+    public synchronized void release(Lexer lexer)
+    {
+        if (count < capacity)
+            free[count++] = lexer;
+    }
+
+    // lex input into sink with a pooled lexer, returns 0 or -1 like Parser.yyparse().
+    public int compile(CharSequence input, TokenSink sink) throws Exception
+    {
+        Lexer lexer = acquire(input);
+        try
+        {
+            lexer.yyparser.sink = sink;
+            return lexer.yyparser.yyparse();
+        }
+        finally
+        {
+            lexer.yyparser.sink = null;
+            release(lexer);
+        }
+    }
+
+    synchronized Lexer take()
+    {
+        if (count == 0)
+        {
+            created++;
+            return null;
+        }
+        reused++;
+        Lexer lexer = free[--count];
+        free[count] = null;
+        return lexer;
+    }
+
+    public synchronized String toString()
+    {
+        return count + " of " + capacity + " lexers free, " + created + " created, " + reused + " reused";
+    }
+}
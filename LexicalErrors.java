@@ -0,0 +1,108 @@
+// the lexical errors a Lexer in recovery mode has read past, in the order it found them.
+// at most limit errors are kept, the Lexer stops at the one that fills the list as it stops at every error otherwise.
+public class LexicalErrors
+{
+    public static final int UNDERSCORE = 0;     // '_' where a token starts
+    public static final int PERIOD     = 1;     // '.' where a token starts
+    public static final int BANG       = 2;     // '!' not followed by '='
+    public static final int COLON      = 3;     // ':' not followed by ':' or '='
+    public static final int NUMBER     = 4;     // a number ending in '.', like "3.."
+
+    static final String[] MESSAGES = {
+        "an identifier cannot start with '_'",
+        "a token cannot start with '.'",
+        "'!' has to be followed by '='",
+        "':' has to be followed by ':' or '='",
+        "a number cannot end with '.'",
+    };
+
+    public final int limit;
+    int[] categories = new int[16];
+    int[] lines      = new int[16];
+    int[] columns    = new int[16];
+    int[] offsets    = new int[16];
+    int   count      = 0;
+
+    public LexicalErrors(int limit)
+    {
+        if (limit < 1)
+            throw new IllegalArgumentException("error limit must be positive: " + limit);
+        this.limit = limit;
+    }
+
+    // record an error, returns false when that filled the list and lexing has to stop.
+    boolean add(int category, int line, int column, int offset)
+    {
+        if (count == categories.length)
+        {
+            int n = Math.min(count * 2, limit);
+            categories = java.util.Arrays.copyOf(categories, n);
+            lines      = java.util.Arrays.copyOf(lines, n);
+            columns    = java.util.Arrays.copyOf(columns, n);
+            offsets    = java.util.Arrays.copyOf(offsets, n);
+        }
+        categories[count] = category;
+        lines[count]      = line;
+        columns[count]    = column;
+        offsets[count]    = offset;
+        count++;
+        return count < limit;
+    }
+
+    // hand the errors to a sink, and turn the status of the lexer into the status of the file.
+    int report(TokenSink sink, int status) throws Exception
+    {
+        for (int i = 0; i < count; i++)
+            sink.error(categories[i], lines[i], columns[i]);
+        return count > 0 ? -1 : status;
+    }
+
+    void clear()
+    {
+        count = 0;
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    public boolean full()
+    {
+        return count == limit;
+    }
+
+    public int category(int i)
+    {
+        return categories[i];
+    }
+
+    public int line(int i)
+    {
+        return lines[i];
+    }
+
+    public int column(int i)
+    {
+        return columns[i];
+    }
+
+    // offset of the error in the input, in characters (bytes for a mapped file).
+    public int offset(int i)
+    {
+        return offsets[i];
+    }
+
+    public static String message(int category)
+    {
+        return MESSAGES[category];
+    }
+
+    public String toString()
+    {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < count; i++)
+            b.append(lines[i]).append(':').append(columns[i]).append(' ').append(MESSAGES[categories[i]]).append(System.lineSeparator());
+        return b.toString();
+    }
+}
@@ -0,0 +1,97 @@
+// where the lines of an input start, and which characters take no column, recorded by an OffsetLexer as it reads them.
+// line and column of any offset are worked out from it afterwards, the same the Lexer counts them while it reads:
+// the line is found by a binary search over the line starts, the column is the distance from the start of the line,
+// less the characters in between that take none ('\r', NULs and anything the lexer does not know, which in a mapped
+// file may be several bytes long).
+public class LineIndex
+{
+    final int firstLine;
+    int[] starts  = new int[64];    // offset of each line, from firstLine on
+    int   lines   = 1;
+    int[] skips   = new int[16];    // offset of each character that takes no column
+    int[] skipped = new int[16];    // characters (bytes for a mapped file) those take up to and including this one
+    int   count   = 0;
+
+    // an input that starts at offset start on line firstLine.
+    public LineIndex(int firstLine, int start)
+    {
+        this.firstLine = firstLine;
+        starts[0] = start;
+    }
+
+    // a line starts at offset start, which is past the starts recorded so far.
+    void newLine(int start)
+    {
+        if (lines == starts.length)
+            starts = java.util.Arrays.copyOf(starts, lines * 2);
+        starts[lines++] = start;
+    }
+
+    // the character at offset, width characters long, takes no column. one read again is only recorded once.
+    void skip(int offset, int width)
+    {
+        if (count > 0 && skips[count - 1] >= offset)
+            return;
+        if (count == skips.length)
+        {
+            skips   = java.util.Arrays.copyOf(skips, count * 2);
+            skipped = java.util.Arrays.copyOf(skipped, count * 2);
+        }
+        skips[count]   = offset;
+        skipped[count] = (count == 0 ? 0 : skipped[count - 1]) + width;
+        count++;
+    }
+
+    public int line(int offset)
+    {
+        return firstLine + lineAt(offset);
+    }
+
+    public int column(int offset)
+    {
+        int start = starts[lineAt(offset)];
+        return offset - start + 1 - (skippedBefore(offset) - skippedBefore(start));
+    }
+
+    // index in starts of the line offset is on.
+    int lineAt(int offset)
+    {
+        return Math.max(0, last(starts, lines, offset));
+    }
+
+    int skippedBefore(int offset)
+    {
+        int k = last(skips, count, offset - 1);
+        return k < 0 ? 0 : skipped[k];
+    }
+
+    // index of the last of the first n sorted offsets that is at most offset, -1 if there is none.
+    static int last(int[] offsets, int n, int offset)
+    {
+        int lo = 0, hi = n - 1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (offsets[mid] <= offset)
+                lo = mid + 1;
+            else
+                hi = mid - 1;
+        }
+        return hi;
+    }
+
+    // the number of lines seen so far.
+    public int lines()
+    {
+        return lines;
+    }
+
+    // approximate heap size of the index, arrays and their headers included.
+    public long footprintBytes()
+    {
+        final int header = 16;
+        return header + 4 * 4
+             + header + 4L * starts.length
+             + 2 * (header + 4L * skips.length);
+    }
+}
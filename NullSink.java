@@ -0,0 +1,14 @@
+// drops every token, for benchmarks that only want to time lexing and parsing. counts what it drops.
+public class NullSink implements TokenSink
+{
+    public long tokens = 0;
+
+    public void token(int kind, CharSequence lexeme, int line, int column)
+    {
+        tokens++;
+    }
+
+    public void end(int status, int line, int column)
+    {
+    }
+}
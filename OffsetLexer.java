@@ -0,0 +1,151 @@
+// a TableLexer whose tokens carry only their offsets: next() keeps no lineno and column while it reads, it records where
+// lines start and which characters take no column in lines instead. line(offset) and column(offset) give the position
+// of any token afterwards, the same lineno and column the TableLexer would have set for it.
+//
+// for consumers that look at positions only when something goes wrong. at the end of the input and on an error,
+// lineno and column are worked out before next() returns, so reporting those needs nothing else; for a token they are
+// left as they are until locate() is called.
+public class OffsetLexer extends TableLexer
+{
+    public LineIndex lines;
+
+    public OffsetLexer(java.io.Reader reader, Parser yyparser) throws Exception
+    {
+        super(reader, yyparser);
+        lines = new LineIndex(lineno, 0);
+    }
+
+    public OffsetLexer(java.io.Reader reader, Parser yyparser, int blockSize) throws Exception
+    {
+        super(reader, yyparser, blockSize);
+        lines = new LineIndex(lineno, 0);
+    }
+
+    public OffsetLexer(java.nio.file.Path path, Parser yyparser) throws Exception
+    {
+        super(path, yyparser);
+        lines = new LineIndex(lineno, 0);
+    }
+
+    OffsetLexer(java.nio.MappedByteBuffer mapped, int start, int end, int lineno, Parser yyparser)
+    {
+        super(mapped, start, end, lineno, yyparser);
+        lines = new LineIndex(lineno, start);
+    }
+
+    // a new index for the new input, the old one may still be held by the tokens of the last.
+    public void reset(java.io.Reader reader)
+    {
+        super.reset(reader);
+        lines = new LineIndex(1, 0);
+    }
+
+    // TableLexer.next() without accumulator, lexBegin and column. NEW_LINE, the '\n' after a comment and SKIP in
+    // START are the only actions that touch the index, everything else only moves on.
+    public int next() throws Exception
+    {
+        int state = START;
+        while (true)
+        {
+            char c = readCharFromBuffer();
+            int entry = table[state * classes + charClass[c < OTHER ? c : OTHER]];
+            int target = entry & 0xFF;
+            switch (entry >>> 8)
+            {
+                case MOVE :
+                    state = target;
+                    continue;
+                case SKIP :
+                    if (state == START)
+                        skipped();
+                    else if (c == '\n')
+                        lines.newLine(position() + 1);  // the end of a comment
+                    state = target;
+                    continue;
+                case BEGIN_LEXEME :
+                    lexStart    = position();
+                    spillLength = 0;
+                    state = target;
+                    continue;
+                case NEW_LINE :
+                    lines.newLine(position() + 1);
+                    continue;
+                case BEGIN_COMMENT :
+                    lexStart = -1;
+                    state = COMMENT;
+                    scanComment();
+                    continue;
+                case SINGLE :
+                    return single(target);
+                case CLOSE :
+                    return token(target);
+                case CLOSE_NOT_EQUAL :
+                    return constant(Parser.RELOP, NOT_EQUAL);
+                case RETRACT :
+                    retract();
+                    return token(target);
+                case RETRACT_LESS :
+                    retract();
+                    return constant(Parser.RELOP, LESS_THAN);
+                case ERROR :
+                    locate(position());
+                    failure = c == '_' ? LexicalErrors.UNDERSCORE : LexicalErrors.PERIOD;
+                    return Fail();
+                case ERROR_CLOSE :
+                    locate(lexStart);
+                    failure = charAt(lexStart) == ':' ? LexicalErrors.COLON : LexicalErrors.BANG;
+                    return Fail();
+                case ERROR_RETRACT :
+                    locate(lexStart);
+                    retract();
+                    failure = LexicalErrors.NUMBER;
+                    return Fail();
+                default :   // END_OF_FILE
+                    // a NUL read from the input takes no column, the end of the input is just past the last character.
+                    int end = position() >= 0 && charAt(position()) == 0 ? position() : position() + 1;
+                    if (end == position())
+                        lines.skip(end, 1);     // once, however often the end is read
+                    if (state == COMMENT)
+                        lines.newLine(end);     // the Lexer counts the line of a comment when the comment starts
+                    locate(end);
+                    return endOfFile();
+            }
+        }
+    }
+
+    // the character just read takes no column. a character a mapped file holds in several bytes ends at position().
+    void skipped()
+    {
+        int end = position();
+        int start = end;
+        if (mapped != null)
+        {
+            while (start > 0 && (mapped.get(start) & 0xC0) == 0x80 && mapped.get(start - 1) < 0)
+                start--;
+        }
+        lines.skip(start, end - start + 1);
+    }
+
+    // set lineno and column to those of the token just read.
+    public void locate()
+    {
+        if (tokenKind > 0)
+            locate(tokenStart);
+    }
+
+    void locate(int offset)
+    {
+        lineno = lines.line(offset);
+        column = lines.column(offset);
+    }
+
+    public int line(int offset)
+    {
+        return lines.line(offset);
+    }
+
+    public int column(int offset)
+    {
+        return lines.column(offset);
+    }
+}
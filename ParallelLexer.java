@@ -0,0 +1,181 @@
+// lexes one large file on a fork/join pool. MinC has no token that spans lines, and a comment ends at its newline,
+// so at the start of every line the Lexer is back in state 0 at column 1. the mapped file is cut into chunks
+// at newlines, every chunk is lexed on its own counting lines from 1, and the chunks are joined in order with
+// their line numbers moved down by the lines of the chunks before. columns need no correction.
+//
+// the result is the token sequence the sequential Lexer produces, up to the first error or end of file.
+public class ParallelLexer
+{
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    final java.nio.MappedByteBuffer mapped;
+    final int                       size;
+
+    public int     chunkSize = DEFAULT_CHUNK_SIZE;  // bytes per chunk, chunks are extended to the next newline
+    public boolean table     = false;               // lex the chunks with TableLexer
+    public java.util.concurrent.ForkJoinPool pool = java.util.concurrent.ForkJoinPool.commonPool();
+
+    TokenBuffer tokens = new TokenBuffer(0);
+
+    // how lexing ended: 0 at the end of file and -1 on a lexical error, at lineno:column like the Lexer.
+    public int status;
+    public int lineno;
+    public int column;
+
+    public ParallelLexer(java.nio.file.Path path) throws Exception
+    {
+        this.mapped = Lexer.map(path);
+        this.size   = mapped.limit();
+    }
+
+    // the tokens of one chunk, with its lines counted from 1.
+    class Chunk
+    {
+        final int start;
+        final int end;
+        final TokenBuffer tokens = new TokenBuffer(256);
+        boolean complete;   // lexed up to its end, the chunks after it follow on
+
+        Chunk(int start, int end)
+        {
+            this.start = start;
+            this.end   = end;
+        }
+
+        void lex() throws Exception
+        {
+            Lexer lexer = table ? new TableLexer(mapped, start, end, 1, null) : new Lexer(mapped, start, end, 1, null);
+            int token = tokens.fill(lexer);
+            // a NUL byte ends the file for the Lexer, wherever it is.
+            complete = token == 0 && (end == size || mapped.get(lexer.tokenStart) != 0);
+        }
+    }
+
+    // lex the whole file, returns status.
+    public int lex() throws Exception
+    {
+        java.util.List<Chunk> chunks = split();
+        if (chunks.isEmpty())   // an empty file, there is nothing to fork
+        {
+            tokens = new TokenBuffer(0);
+            status = tokens.status = 0;
+            lineno = tokens.lineno = 1;
+            column = tokens.column = 1;
+            return status;
+        }
+        pool.invoke(new LexChunks(chunks, 0, chunks.size()));
+
+        // keep the chunks up to the first one that stopped early, every other one follows on from the one before.
+        int used = 0, total = 0;
+        while (used < chunks.size())
+        {
+            Chunk c = chunks.get(used++);
+            total += c.tokens.size();
+            if (!c.complete)
+                break;
+        }
+        tokens = new TokenBuffer(total);
+        tokens.bytes = mapped;
+        int linesBefore = 0;
+        for (int i = 0; i < used; i++)
+        {
+            TokenBuffer t = chunks.get(i).tokens;
+            tokens.append(t, linesBefore);
+            tokens.status = t.status;
+            tokens.lineno = t.lineno + linesBefore;
+            tokens.column = t.column;
+            linesBefore += t.lineno - 1;
+        }
+        status = tokens.status;
+        lineno = tokens.lineno;
+        column = tokens.column;
+        return status;
+    }
+
+    // cut the file after the first newline at or behind every chunkSize bytes.
+    java.util.List<Chunk> split()
+    {
+        java.util.List<Chunk> chunks = new java.util.ArrayList<>();
+        int start = 0;
+        while (start < size)
+        {
+            int end = (int)Math.min((long)start + Math.max(1, chunkSize), size);
+            while (end < size && mapped.get(end - 1) != '\n')
+                end++;
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    class LexChunks extends java.util.concurrent.RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        final java.util.List<Chunk> chunks;
+        final int from;
+        final int to;
+
+        LexChunks(java.util.List<Chunk> chunks, int from, int to)
+        {
+            this.chunks = chunks;
+            this.from   = from;
+            this.to     = to;
+        }
+
+        protected void compute()
+        {
+            if (to - from > 1)
+            {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LexChunks(chunks, from, middle), new LexChunks(chunks, middle, to));
+                return;
+            }
+            try
+            {
+                chunks.get(from).lex();
+            }
+            catch (Exception e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    // the tokens of the last lex().
+    public TokenBuffer tokens()
+    {
+        return tokens;
+    }
+
+    public int size()
+    {
+        return tokens.size();
+    }
+
+    public int kind(int i)
+    {
+        return tokens.kind(i);
+    }
+
+    public int start(int i)
+    {
+        return tokens.start(i);
+    }
+
+    public int line(int i)
+    {
+        return tokens.line(i);
+    }
+
+    public int column(int i)
+    {
+        return tokens.column(i);
+    }
+
+    // the lexeme of token i, as Lexer.lexeme() read it.
+    public CharSequence lexeme(int i)
+    {
+        return tokens.lexeme(i);
+    }
+}
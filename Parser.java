@@ -22,13 +22,12 @@ public class Parser
     public static final int WHILE      = 29;    // "while"
     public static final int VOID       = 30;    // "void"
 
-    // String[] keywords = {"int ", "print ", "var ", "func ", "if ", "else ", "while ", "void "};
-
     Compiler         compiler;
     Lexer            lexer;     // lexer.yylex() returns token-name
     public ParserVal yylval;    // yylval contains token-attribute
+    public TokenSink sink;      // where the tokens go, a TextSink on System.out unless set
 
-    String[] tokens = {"OP", "RELOP", "TYPEOF", "ASSIGN", "LPAREN","RPAREN","SEMI","COMMA","FUNCRET","NUM","ID","BEGIN","END","INT","PRINT",
+    static final String[] tokens = {"OP", "RELOP", "TYPEOF", "ASSIGN", "LPAREN","RPAREN","SEMI","COMMA","FUNCRET","NUM","ID","BEGIN","END","INT","PRINT",
                        "VAR","FUNC","IF","ELSE","WHILE","VOID"};
 
     public Parser(java.io.Reader r, Compiler compiler) throws Exception
@@ -37,29 +36,52 @@ public class Parser
         this.lexer    = new Lexer(r, this);
     }
 
+    public Parser(java.nio.file.Path path, Compiler compiler) throws Exception
+    {
+        this.compiler = compiler;
+        this.lexer    = new Lexer(path, this);
+    }
+
+    // parse the tokens of a lexer built elsewhere, a TableLexer for instance.
+    public Parser(Lexer lexer, Compiler compiler) throws Exception
+    {
+        this.compiler   = compiler;
+        this.lexer      = lexer;
+        lexer.yyparser  = this;
+    }
+
+    // parse another input with the lexer and sink this parser already has.
+    public void reset(java.io.Reader r)
+    {
+        lexer.reset(r);
+        yylval = null;
+    }
+
+    public void reset(CharSequence input)
+    {
+        lexer.reset(input);
+        yylval = null;
+    }
+
     public int yyparse() throws Exception
     {
+        if (sink == null)
+            sink = new TextSink(System.out);
         while ( true )
         {
-            int token = lexer.yylex();  // get next token-name
-            Object attr = yylval.obj;   // get      token-attribute
+            int token = lexer.next();   // get next token-name, the token-attribute is lexer.lexeme()
             
-            if(token == 0)
-            {
-                // EOF is reached
-                System.out.println("Success!");
-                return 0;
-            }
-            if(token == -1)
+            if(token == 0 || token == -1)
             {
-                // lexical error is found
-                System.out.println("Error! There is a lexical error at " + lexer.lineno + ":" + lexer.column + ".");
-                return -1;
+                // EOF is reached, or a lexical error is found
+                if (lexer.errors != null)
+                    token = lexer.errors.report(sink, token);
+                sink.end(token, lexer.lineno, lexer.column);
+                sink.flush();
+                return token;
             }
 
-            String tokenname = tokens[token - 10];
-            
-            System.out.println("<" + tokenname + ", token-attr:\"" + attr + "\", " + lexer.lineno + ":" + lexer.column + ">");
+            sink.token(token, lexer.lexeme(), lexer.lineno, lexer.column);
         }
     }
 }
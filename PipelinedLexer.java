@@ -0,0 +1,118 @@
+// a Lexer whose next() takes the tokens another lexer reads on a thread of its own, through a TokenRing, so
+// lexing runs ahead while the parser works on the tokens before. Parser and LalrParser use it like any Lexer:
+// the cursor, lexeme(), and 0 at the end of file or -1 on an error, with lineno and column where lexing stopped.
+//
+// the lexemes are read from the source of the other lexer, which is why only a mapped file or a text kept
+// whole can be pipelined. a Reader reuses its blocks while the parser may still look at the tokens in them.
+// the thread starts at the first next(). a parser that stops before the end calls close(), or the thread
+// waits for room in the ring forever.
+public class PipelinedLexer extends Lexer implements Runnable
+{
+    public static final int DEFAULT_CAPACITY = 1 << 14;     // slots, 21 bytes each
+    public static final int DEFAULT_BATCH    = 256;
+
+    final Lexer        source;
+    final CharSequence text;    // the text source reads, null for a mapped file
+    final TokenRing    ring;
+    Thread             thread;
+
+    public PipelinedLexer(java.nio.file.Path path, boolean table, int wait) throws Exception
+    {
+        this(table ? new TableLexer(path, null) : new Lexer(path, null), null, new TokenRing(DEFAULT_CAPACITY, DEFAULT_BATCH, wait));
+    }
+
+    public PipelinedLexer(CharSequence text, boolean table, int wait) throws Exception
+    {
+        this(table ? new TableLexer(new TextReader(text, 0), null) : new Lexer(new TextReader(text, 0), null), text, new TokenRing(DEFAULT_CAPACITY, DEFAULT_BATCH, wait));
+    }
+
+    // the tokens of source, a lexer of a mapped file or of text. its errors and symbols are used, and are
+    // this lexer's once it has ended.
+    public PipelinedLexer(Lexer source, CharSequence text, TokenRing ring)
+    {
+        super(source.mapped, 0, 0, source.lineno, null);
+        if (source.mapped == null && text == null)
+            throw new IllegalArgumentException("only a lexer of a mapped file or of a text can be pipelined");
+        this.source  = source;
+        this.text    = text;
+        this.ring    = ring;
+        this.symbols = null;
+        this.errors  = source.errors;
+    }
+
+    public int next() throws Exception
+    {
+        if (thread == null)
+        {
+            thread = new Thread(this, "minc-lexer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        int kind = ring.take(this);
+        if (kind > 0)
+            return kind;
+        // the source has ended, and everything it wrote is visible since ended was read
+        tokenKind     = kind;
+        tokenConstant = null;
+        tokenSymbol   = -1;
+        lineno        = ring.lineno;
+        column        = ring.column;
+        symbols       = source.symbols;
+        reloads       = source.reloads;
+        retracts      = source.retracts;
+        if (kindCounts != null)
+            System.arraycopy(source.kindCounts, 0, kindCounts, 0, kindCounts.length);
+        if (ring.failure instanceof Exception)
+            throw (Exception)ring.failure;
+        if (ring.failure != null)
+            throw (Error)ring.failure;
+        return kind;
+    }
+
+    // the lexer thread.
+    public void run()
+    {
+        try
+        {
+            int token;
+            while ((token = source.next()) > 0)
+            {
+                if (!ring.put(source))
+                    return;
+            }
+            ring.end(token, source.lineno, source.column, null);
+        }
+        catch (Throwable e)
+        {
+            ring.end(-1, source.lineno, source.column, e);
+        }
+    }
+
+    // stop the lexer thread, when the parser is done before the end of the input.
+    public void close()
+    {
+        ring.close();
+    }
+
+    public CharSequence lexeme()
+    {
+        if (text != null && tokenConstant == null)
+            return lexeme.set(text, tokenStart, tokenLength);
+        return super.lexeme();
+    }
+
+    long inputRead()
+    {
+        return source.inputRead();
+    }
+
+    public void reset(java.io.Reader reader)
+    {
+        throw new IllegalStateException("a pipelined lexer cannot read another input");
+    }
+
+    public void reset(CharSequence input)
+    {
+        throw new IllegalStateException("a pipelined lexer cannot read another input");
+    }
+}
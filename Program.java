@@ -1,4 +1,30 @@
 public class Program {
+    static final String USAGE =
+        "usage: java Program [options] [file | directory | glob] ...\n" +
+        "       java Program [options] -\n" +
+        "  directories are searched for *.minc files, globs like src/**/*.minc are expanded.\n" +
+        "  - lexes stdin as it arrives, printing tokens as soon as they are complete.\n" +
+        "  -j, --threads N   lex N files at a time (default: one per processor)\n" +
+        "  --virtual         one virtual thread per file (JDK 21 and later)\n" +
+        "  --table           use the table-driven TableLexer\n" +
+        "  --reader          read files through a FileReader instead of mapping them\n" +
+        "  --summary         print totals to stderr when done\n" +
+        "  --metrics         count bytes, tokens, reloads, retracts, errors and time, over JMX and with --summary\n" +
+        "  --errors N        go on lexing after an error, and report up to N of them a file (not with --ast)\n" +
+        "  --sink text|null|binary\n" +
+        "                    print the tokens (default), only lex and parse them, or write them to file.tok\n" +
+        "  --pipeline spin|yield|park\n" +
+        "                    lex mapped files of 1 MB and more on a thread of their own, ahead of the parser,\n" +
+        "                    waiting on each other by spinning, yielding or parking; ignored on a single processor\n" +
+        "  --parallel        lex mapped files of 2 MB and more in 1 MB chunks on all processors, up to the first error\n" +
+        "  --ast             parse each file with the LALR(1) parser and print its syntax tree instead of the tokens\n" +
+        "  --offsets         with --ast, lex with OffsetLexer, which works out lines and columns only for an error\n" +
+        "  --cache DIR       keep the tokens of each file in DIR, and replay them while the file is unchanged\n" +
+        "  --cache-size N    evict the least recently used files when the cache is over N bytes, like 64m (default 256m)\n" +
+        "  --server ADDRESS  answer lexing requests on a port, host:port or Unix domain socket path instead, see Server\n" +
+        "                    (a socket path needs JDK 16 or later)\n" +
+        "  .tok files given as inputs are replayed and printed without lexing their source again";
+
     public static void main(String[] args) throws Exception
     {
         //java.io.Reader r = new java.io.StringReader
@@ -12,18 +38,100 @@ public class Program {
         //);
         //
 
-        //"test1.minc","test2.minc","test3.minc","test4.minc","test5.minc" , "test6.minc", "test7.minc",
-        // , "test5.minc", "test6.minc", "test7.minc", "test8.minc"
-         args = new String[] { "test1.minc","test2.minc","test3.minc","test4.minc","test5.minc" , "test6.minc", "test7.minc","test8.minc"};
-
-        if(args.length <= 0)
-            return;    
+        Driver driver = new Driver();
+        java.util.List<String> inputs = new java.util.ArrayList<>();
+        String cache = null;
+        long cacheSize = 256L << 20;
+        boolean stdin = false;
+        String server = null;
         for (int i = 0; i < args.length; i++)
         {
-            java.io.Reader r = new java.io.FileReader(args[i]);
-            Compiler compiler = new Compiler(r);
-            compiler.Compile();
-            System.out.println();
+            switch (args[i])
+            {
+                case "-j" :
+                case "--threads" : driver.threads = Integer.parseInt(args[++i]); break;
+                case "--virtual" : driver.virtual = true; break;
+                case "--table"   : driver.table   = true; break;
+                case "--reader"  : driver.mapped  = false; break;
+                case "--summary" : driver.summary = true; break;
+                case "--metrics" : System.setProperty("minc.metrics", "true"); break;  // before LexerMetrics is loaded
+                case "--errors"  : driver.maxErrors = Integer.parseInt(args[++i]); break;
+                case "--sink"    : driver.sink    = sink(args[++i]); break;
+                case "--ast"     : driver.ast     = true; break;
+                case "--offsets" : driver.offsets = true; break;
+                case "--pipeline" : driver.pipeline = TokenRing.wait(args[++i]); break;
+                case "--parallel" : driver.parallel = true; break;
+                case "--cache"   : cache = args[++i]; break;
+                case "--cache-size" : cacheSize = size(args[++i]); break;
+                case "--server"  : server = args[++i]; break;
+                case "-"         : stdin = true; break;
+                case "-h" :
+                case "--help"    : System.out.println(USAGE); return;
+                default :
+                    if (args[i].startsWith("-"))
+                    {
+                        System.err.println("unknown option " + args[i] + "\n" + USAGE);
+                        System.exit(2);
+                    }
+                    inputs.add(args[i]);
+            }
+        }
+
+        // the LALR parser stops at the first error, lexical or syntax, it does not parse on behind one.
+        if (driver.ast && driver.maxErrors > 0)
+        {
+            System.err.println("--errors does not go with --ast, parsing stops at the first error\n" + USAGE);
+            System.exit(2);
+        }
+
+        if (server != null)
+        {
+            Server s = new Server(driver, server);
+            System.err.println("listening on " + s.address());
+            s.run();
+            return;
+        }
+
+        if (stdin)
+        {
+            java.io.FileOutputStream out = new java.io.FileOutputStream(java.io.FileDescriptor.out);
+            int status = driver.stream(new java.io.FileInputStream(java.io.FileDescriptor.in).getChannel(), out);
+            System.exit(status == 0 ? 0 : 1);
+        }
+
+        // without arguments, lex the tests like run.bat used to.
+        if (inputs.isEmpty())
+            inputs = java.util.Arrays.asList("test1.minc","test2.minc","test3.minc","test4.minc","test5.minc" , "test6.minc", "test7.minc","test8.minc");
+
+        if (cache != null)
+            driver.cache = new TokenCache(java.nio.file.Paths.get(cache), cacheSize);
+        int failed = driver.run(Driver.expand(inputs), System.out);
+        if (failed > 0)
+            System.exit(1);
+    }
+
+    // a size like 4096, 64k, 16m or 1g.
+    static long size(String s)
+    {
+        String digits = s.toLowerCase();
+        int shift = 0;
+        switch (digits.charAt(digits.length() - 1))
+        {
+            case 'k' : shift = 10; break;
+            case 'm' : shift = 20; break;
+            case 'g' : shift = 30; break;
+        }
+        if (shift != 0)
+            digits = digits.substring(0, digits.length() - 1);
+        return Long.parseLong(digits) << shift;
+    }
+
+    static String sink(String name)
+    {
+        switch (name)
+        {
+            case "text" : case "null" : case "binary" : return name;
+            default : throw new IllegalArgumentException("unknown sink " + name + ", use text, null or binary");
         }
     }
 }
@@ -0,0 +1,427 @@
+// lexes the sources clients send over a local socket, for callers that would otherwise start a JVM per file.
+// the address is a port on the loopback interface, host:port, or the path of a Unix domain socket (JDK 16 and later).
+//
+// every message is a frame: a 4-byte big-endian length, then that many bytes.
+//   request   the source, in UTF-8
+//   response  a status byte, 0 for success and 1 for a lexical error, then what Program prints for a file
+//             (only the status with --sink null)
+// a client may send any number of requests without waiting, they are answered in order. every request one read
+// brings in is lexed before their responses go out in a single write, so pipelined requests are batched both ways.
+//
+// connections are spread over one selector loop per thread, each lexing with a lexer from a LexerPool,
+// so an idle connection costs its two buffers and no thread.
+public class Server
+{
+    public static final int MAX_FRAME   = 16 << 20;  // a larger request closes the connection
+    static final int        MAX_PENDING = 1 << 20;   // stop reading from a connection while it has this much unwritten
+
+    final Driver                              settings;
+    final LexerPool                           lexers;
+    final java.nio.channels.ServerSocketChannel listener;
+    final Loop[]                              loops;
+
+    final java.util.concurrent.atomic.AtomicLong connections = new java.util.concurrent.atomic.AtomicLong();
+    final java.util.concurrent.atomic.AtomicLong requests    = new java.util.concurrent.atomic.AtomicLong();
+
+    // bind to address and start the loops, run() then accepts the connections.
+    public Server(Driver settings, String address) throws Exception
+    {
+        if ("binary".equals(settings.sink))
+            throw new IllegalArgumentException("the server answers with text, or only the status with --sink null");
+        this.settings = settings;
+        this.lexers   = new LexerPool(Math.max(1, settings.threads), () -> {
+            Lexer lexer = settings.table ? new TableLexer(new TextReader("", 0), null) : new Lexer(new TextReader("", 0), null);
+            if (settings.maxErrors > 0)
+                lexer.errors = new LexicalErrors(settings.maxErrors);
+            return lexer;
+        });
+        java.net.SocketAddress bind = address(address);
+        if (isUnix(bind))
+        {
+            removeStale((java.nio.file.Path)unix(UNIX_ADDRESS, "getPath", bind, null, null));
+            listener = (java.nio.channels.ServerSocketChannel)unix(java.nio.channels.ServerSocketChannel.class, "open", null, java.net.ProtocolFamily.class, unixFamily());
+        }
+        else
+        {
+            listener = java.nio.channels.ServerSocketChannel.open();
+        }
+        listener.bind(bind, 4096);
+        loops = new Loop[Math.max(1, settings.threads)];
+        for (int i = 0; i < loops.length; i++)
+        {
+            loops[i] = new Loop();
+            Thread t = new Thread(loops[i], "minc-server-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    // Unix domain sockets came with JDK 16. they are reached through reflection, so that on an older JDK the rest of
+    // the compiler builds and runs, and the server listens on ports.
+    static final Class<?> UNIX_ADDRESS = unixAddress();
+
+    static Class<?> unixAddress()
+    {
+        try
+        {
+            return Class.forName("java.net.UnixDomainSocketAddress");
+        }
+        catch (ClassNotFoundException e)
+        {
+            return null;
+        }
+    }
+
+    static java.net.ProtocolFamily unixFamily()
+    {
+        return java.net.StandardProtocolFamily.valueOf("UNIX");
+    }
+
+    // the address of the Unix domain socket at path, a String or a Path.
+    static java.net.SocketAddress unixAddress(Object path) throws java.io.IOException
+    {
+        if (UNIX_ADDRESS == null)
+            throw new IllegalArgumentException("Unix domain sockets need JDK 16 or later, give a port or host:port for " + path);
+        return (java.net.SocketAddress)unix(UNIX_ADDRESS, "of", null, path instanceof String ? String.class : java.nio.file.Path.class, path);
+    }
+
+    // call method of owner on target, null for a static one, with the one argument of type, or none when type is null.
+    // what the method throws is thrown as it is.
+    static Object unix(Class<?> owner, String method, Object target, Class<?> type, Object argument) throws java.io.IOException
+    {
+        try
+        {
+            return type == null ? owner.getMethod(method).invoke(target) : owner.getMethod(method, type).invoke(target, argument);
+        }
+        catch (java.lang.reflect.InvocationTargetException e)
+        {
+            if (e.getCause() instanceof java.io.IOException)
+                throw (java.io.IOException)e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static boolean isUnix(java.net.SocketAddress address)
+    {
+        return UNIX_ADDRESS != null && UNIX_ADDRESS.isInstance(address);
+    }
+
+    // an unconnected channel that can connect to address.
+    static java.nio.channels.SocketChannel open(java.net.SocketAddress address) throws java.io.IOException
+    {
+        if (!isUnix(address))
+            return java.nio.channels.SocketChannel.open();
+        return (java.nio.channels.SocketChannel)unix(java.nio.channels.SocketChannel.class, "open", null, java.net.ProtocolFamily.class, unixFamily());
+    }
+
+    // a port on the loopback interface, host:port, or the path of a Unix domain socket.
+    static java.net.SocketAddress address(String s) throws java.io.IOException
+    {
+        if (s.matches("\\d+"))
+            return new java.net.InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), Integer.parseInt(s));
+        int colon = s.lastIndexOf(':');
+        if (colon > 0 && s.indexOf('/') < 0 && s.substring(colon + 1).matches("\\d+"))
+            return new java.net.InetSocketAddress(s.substring(0, colon), Integer.parseInt(s.substring(colon + 1)));
+        return unixAddress(s);
+    }
+
+    // delete the socket an earlier server left at path. anything else there is not the server's to delete, and neither
+    // is the socket of a server that still answers on it.
+    static void removeStale(java.nio.file.Path path) throws java.io.IOException
+    {
+        boolean socket;
+        try
+        {
+            int mode = (Integer)java.nio.file.Files.getAttribute(path, "unix:mode", java.nio.file.LinkOption.NOFOLLOW_LINKS);
+            socket = (mode & 0170000) == 0140000;  // S_IFSOCK
+        }
+        catch (java.nio.file.NoSuchFileException e)
+        {
+            return;
+        }
+        catch (UnsupportedOperationException | IllegalArgumentException e)
+        {
+            // no unix view of the attributes, a socket is at least none of file, directory and link
+            socket = java.nio.file.Files.readAttributes(path, java.nio.file.attribute.BasicFileAttributes.class, java.nio.file.LinkOption.NOFOLLOW_LINKS).isOther();
+        }
+        if (!socket)
+            throw new java.nio.file.FileAlreadyExistsException(path.toString(), null, "not a socket, will not replace it");
+        java.net.SocketAddress address = unixAddress(path);
+        try (java.nio.channels.SocketChannel probe = open(address))
+        {
+            probe.connect(address);
+            throw new java.net.BindException(path + " is in use by a server that still answers on it");
+        }
+        catch (java.net.ConnectException e)
+        {
+            // nothing listens on it any more
+        }
+        java.nio.file.Files.deleteIfExists(path);
+    }
+
+    // where the server listens, with the port it got when it was asked for port 0.
+    public java.net.SocketAddress address() throws Exception
+    {
+        return listener.getLocalAddress();
+    }
+
+    // accept connections until close().
+    public void run() throws Exception
+    {
+        int next = 0;
+        while (true)
+        {
+            java.nio.channels.SocketChannel channel;
+            try
+            {
+                channel = listener.accept();
+            }
+            catch (java.nio.channels.ClosedChannelException e)
+            {
+                return;
+            }
+            channel.configureBlocking(false);
+            if (channel.getLocalAddress() instanceof java.net.InetSocketAddress)
+                channel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+            connections.incrementAndGet();
+            loops[next++ % loops.length].add(channel);
+        }
+    }
+
+    public void close() throws Exception
+    {
+        listener.close();
+        for (Loop loop : loops)
+            loop.selector.close();
+    }
+
+    public String toString()
+    {
+        return connections.get() + " connections, " + requests.get() + " requests, " + lexers;
+    }
+
+    // the buffers of one client. out holds the responses that are not written yet, from 0 up to its position.
+    static final class Connection
+    {
+        final java.nio.channels.SocketChannel channel;
+        java.nio.ByteBuffer in  = java.nio.ByteBuffer.allocate(4096);
+        java.nio.ByteBuffer out = java.nio.ByteBuffer.allocate(4096);
+
+        Connection(java.nio.channels.SocketChannel channel)
+        {
+            this.channel = channel;
+        }
+
+        // room for n more bytes of responses.
+        java.nio.ByteBuffer reserve(int n)
+        {
+            if (out.remaining() < n)
+            {
+                java.nio.ByteBuffer b = java.nio.ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + n));
+                out.flip();
+                b.put(out);
+                out = b;
+            }
+            return out;
+        }
+    }
+
+    // the Writer under the TextSink of a loop, it appends to the responses of the connection being answered.
+    // the tokens, positions and messages are all ASCII, so every char goes out as the byte it is.
+    static final class Frames extends java.io.Writer
+    {
+        Connection to;
+
+        public void write(char[] buffer, int offset, int length)
+        {
+            java.nio.ByteBuffer out = to.reserve(length);
+            for (int i = 0; i < length; i++)
+            {
+                char c = buffer[offset + i];
+                out.put(c < 0x80 ? (byte)c : (byte)'?');
+            }
+        }
+
+        public void flush()
+        {
+        }
+
+        public void close()
+        {
+        }
+    }
+
+    // one selector thread and the connections it serves.
+    final class Loop implements Runnable
+    {
+        final java.nio.channels.Selector selector = java.nio.channels.Selector.open();
+        final java.util.concurrent.ConcurrentLinkedQueue<java.nio.channels.SocketChannel> added = new java.util.concurrent.ConcurrentLinkedQueue<>();
+        final java.nio.charset.CharsetDecoder decoder = java.nio.charset.StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(java.nio.charset.CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(java.nio.charset.CodingErrorAction.REPLACE);
+        java.nio.CharBuffer chars  = java.nio.CharBuffer.allocate(4096);
+        final Frames        frames = new Frames();
+        TokenSink           sink   = sink();
+
+        Loop() throws java.io.IOException
+        {
+        }
+
+        TokenSink sink()
+        {
+            return "null".equals(settings.sink) ? new NullSink() : new TextSink(frames, 1 << 13);
+        }
+
+        void add(java.nio.channels.SocketChannel channel)
+        {
+            added.add(channel);
+            selector.wakeup();
+        }
+
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    selector.select();
+                    for (java.nio.channels.SocketChannel channel; (channel = added.poll()) != null; )
+                        channel.register(selector, java.nio.channels.SelectionKey.OP_READ, new Connection(channel));
+                    java.util.Iterator<java.nio.channels.SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext())
+                    {
+                        java.nio.channels.SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection c = (Connection)key.attachment();
+                        try
+                        {
+                            if (key.isValid() && key.isReadable())
+                                read(key, c);
+                            if (key.isValid() && key.isWritable())
+                                write(key, c);
+                        }
+                        catch (java.io.IOException e)
+                        {
+                            close(key, c);  // the client went away
+                        }
+                        catch (Exception e)
+                        {
+                            // a request that could not be answered ends its connection, not the loop and the others on it.
+                            // the sink may hold part of the response, the next one starts with a new sink.
+                            System.err.println("server: closing a connection, its request failed: " + e);
+                            sink = sink();
+                            close(key, c);
+                        }
+                    }
+                }
+            }
+            catch (java.nio.channels.ClosedSelectorException e)
+            {
+                // close()
+            }
+            catch (Exception e)
+            {
+                System.err.println("server loop failed: " + e);
+            }
+        }
+
+        // answer every complete request in the input, then write the responses.
+        void read(java.nio.channels.SelectionKey key, Connection c) throws Exception
+        {
+            if (c.channel.read(c.in) < 0)
+            {
+                close(key, c);
+                return;
+            }
+            java.nio.ByteBuffer in = c.in;
+            in.flip();
+            while (in.remaining() >= 4)
+            {
+                int length = in.getInt(in.position());
+                if (length < 0 || length > MAX_FRAME)
+                {
+                    close(key, c);
+                    return;
+                }
+                if (in.remaining() < 4 + length)
+                    break;
+                int start = in.position() + 4;
+                respond(c, in, start, length);
+                in.position(start + length);
+            }
+            in.compact();
+            if (in.position() >= 4 && in.getInt(0) + 4 > in.capacity())     // make room for the whole request
+            {
+                java.nio.ByteBuffer b = java.nio.ByteBuffer.allocate(in.getInt(0) + 4);
+                in.flip();
+                b.put(in);
+                c.in = b;
+            }
+            write(key, c);
+        }
+
+        void respond(Connection c, java.nio.ByteBuffer in, int start, int length) throws Exception
+        {
+            if (chars.capacity() < length)  // UTF-8 never decodes to more chars than it has bytes
+                chars = java.nio.CharBuffer.allocate(length);
+            chars.clear();
+            int limit = in.limit();
+            in.limit(start + length).position(start);
+            decoder.reset();
+            decoder.decode(in, chars, true);
+            decoder.flush(chars);
+            in.limit(limit);
+            chars.flip();
+
+            java.nio.ByteBuffer out = c.reserve(5);
+            int at = out.position();
+            out.position(at + 5);
+            frames.to = c;
+            int status;
+            try
+            {
+                status = lexers.compile(chars, sink);
+            }
+            finally
+            {
+                frames.to = null;
+            }
+            out = c.out;    // reserve() may have moved it
+            out.putInt(at, out.position() - at - 4);
+            out.put(at + 4, (byte)(status == 0 ? 0 : 1));
+            requests.incrementAndGet();
+        }
+
+        void write(java.nio.channels.SelectionKey key, Connection c) throws java.io.IOException
+        {
+            c.out.flip();
+            c.channel.write(c.out);
+            c.out.compact();
+            int pending = c.out.position();
+            int ops = pending == 0 ? java.nio.channels.SelectionKey.OP_READ
+                    : pending < MAX_PENDING ? java.nio.channels.SelectionKey.OP_READ | java.nio.channels.SelectionKey.OP_WRITE
+                    : java.nio.channels.SelectionKey.OP_WRITE;
+            if (key.interestOps() != ops)
+                key.interestOps(ops);
+        }
+
+        void close(java.nio.channels.SelectionKey key, Connection c)
+        {
+            key.cancel();
+            try
+            {
+                c.channel.close();
+            }
+            catch (java.io.IOException e)
+            {
+                // nothing left to do with it
+            }
+        }
+    }
+}
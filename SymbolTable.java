@@ -0,0 +1,207 @@
+// interns identifier lexemes into dense int ids 0, 1, 2, ...
+// lookups hash the characters where they are, only the first occurrence of an identifier copies anything.
+public class SymbolTable
+{
+    int[]  slots  = new int[64];    // open addressing with linear probing, id + 1 per slot and 0 when empty
+    int[]  hashes = new int[16];    // hash of each id
+    int[]  starts = new int[16];    // offset of each id in chars
+    char[] chars  = new char[256];  // the characters of all ids, back to back
+    int    charCount = 0;
+    int    count     = 0;           // number of ids
+
+    long   lookups = 0;
+    long   hits    = 0;
+
+    public int intern(char[] text, int offset, int length)
+    {
+        lookups++;
+        int hash = hash(text, offset, length);
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask)
+        {
+            int id = slots[i] - 1;
+            if (id < 0)
+            {
+                id = add(hash, length);
+                System.arraycopy(text, offset, chars, starts[id], length);
+                slots[i] = id + 1;
+                if (count * 2 > slots.length)
+                    rehash();
+                return id;
+            }
+            if (hashes[id] == hash && equals(id, text, offset, length))
+            {
+                hits++;
+                return id;
+            }
+        }
+    }
+
+    public int intern(CharSequence s)
+    {
+        if (s instanceof Lexeme && ((Lexeme)s).chars != null)
+        {
+            Lexeme l = (Lexeme)s;
+            return intern(l.chars, l.offset, l.length);
+        }
+        lookups++;
+        int length = s.length();
+        int hash = hash(s);
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask)
+        {
+            int id = slots[i] - 1;
+            if (id < 0)
+            {
+                id = add(hash, length);
+                for (int k = 0; k < length; k++)
+                    chars[starts[id] + k] = s.charAt(k);
+                slots[i] = id + 1;
+                if (count * 2 > slots.length)
+                    rehash();
+                return id;
+            }
+            if (hashes[id] == hash && equals(id, s))
+            {
+                hits++;
+                return id;
+            }
+        }
+    }
+
+    // the id of s, or -1 if it has never been interned.
+    public int find(CharSequence s)
+    {
+        int hash = hash(s);
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask)
+        {
+            int id = slots[i] - 1;
+            if (id < 0)
+                return -1;
+            if (hashes[id] == hash && equals(id, s))
+                return id;
+        }
+    }
+
+    // forget every id, keeping the arrays for the next identifiers.
+    public void clear()
+    {
+        java.util.Arrays.fill(slots, 0);
+        charCount = 0;
+        count     = 0;
+        lookups   = 0;
+        hits      = 0;
+    }
+
+    public String name(int id)
+    {
+        return new String(chars, starts[id], length(id));
+    }
+
+    public int length(int id)
+    {
+        return (id + 1 < count ? starts[id + 1] : charCount) - starts[id];
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    // fraction of lookups that found an identifier already interned.
+    public double hitRate()
+    {
+        return lookups == 0 ? 0 : (double)hits / lookups;
+    }
+
+    // approximate heap size of the table, arrays and their headers included.
+    public long footprintBytes()
+    {
+        final int header = 16;
+        return header + 3 * 4 + 2 * 8
+             + header + 4L * slots.length
+             + header + 4L * hashes.length
+             + header + 4L * starts.length
+             + header + 2L * chars.length;
+    }
+
+    public String toString()
+    {
+        return count + " symbols, " + footprintBytes() + " bytes, " + lookups + " lookups, hit rate " + String.format("%.1f%%", 100 * hitRate());
+    }
+
+    // make room for a new id and its characters.
+    int add(int hash, int length)
+    {
+        if (count == hashes.length)
+        {
+            hashes = java.util.Arrays.copyOf(hashes, count * 2);
+            starts = java.util.Arrays.copyOf(starts, count * 2);
+        }
+        if (charCount + length > chars.length)
+            chars = java.util.Arrays.copyOf(chars, Math.max(charCount + length, chars.length * 2));
+        int id = count++;
+        hashes[id] = hash;
+        starts[id] = charCount;
+        charCount += length;
+        return id;
+    }
+
+    void rehash()
+    {
+        int[] table = new int[slots.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < count; id++)
+        {
+            int i = hashes[id] & mask;
+            while (table[i] != 0)
+                i = (i + 1) & mask;
+            table[i] = id + 1;
+        }
+        slots = table;
+    }
+
+    boolean equals(int id, char[] text, int offset, int length)
+    {
+        if (length(id) != length)
+            return false;
+        int start = starts[id];
+        for (int k = 0; k < length; k++)
+        {
+            if (chars[start + k] != text[offset + k])
+                return false;
+        }
+        return true;
+    }
+
+    boolean equals(int id, CharSequence s)
+    {
+        int length = s.length();
+        if (length(id) != length)
+            return false;
+        int start = starts[id];
+        for (int k = 0; k < length; k++)
+        {
+            if (chars[start + k] != s.charAt(k))
+                return false;
+        }
+        return true;
+    }
+
+    static int hash(char[] text, int offset, int length)
+    {
+        int h = 0;
+        for (int k = 0; k < length; k++)
+            h = 31 * h + text[offset + k];
+        return h ^ (h >>> 16);
+    }
+
+    static int hash(CharSequence s)
+    {
+        int h = 0;
+        for (int k = 0; k < s.length(); k++)
+            h = 31 * h + s.charAt(k);
+        return h ^ (h >>> 16);
+    }
+}
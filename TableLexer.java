@@ -0,0 +1,256 @@
+// the Lexer state machine run from a transition table instead of the switch in Lexer.next().
+// the table is generated from a description of the same states, and produces the same tokens, lines and columns.
+//
+// every character costs one load from charClass and one from table, the entry holds the action and the next state.
+// the keyword trie is folded into the identifier states, so state 100 needs no extra work per character either.
+public class TableLexer extends Lexer
+{
+    // states. identifiers take one state per keyword trie node, from ID onwards.
+    static final int START     = 0;
+    static final int COLON     = 1;     // case 2
+    static final int BANG      = 2;     // case 3
+    static final int LESS      = 3;     // case 200
+    static final int GREATER   = 4;     // case 201
+    static final int MINUS     = 5;     // case 202
+    static final int SLASH     = 6;     // case 203
+    static final int COMMENT   = 7;     // case 300
+    static final int NUMBER    = 8;     // case 1000
+    static final int PERIOD    = 9;     // case 1001, nothing read after the period yet
+    static final int FRACTION  = 10;    // case 1001, digits after the period
+    static final int ID        = 11;    // case 100
+    static final int STATES    = ID + keywordToken.length;
+
+    // actions, in the high byte of a table entry. the low byte holds the next state or the token-name.
+    static final int MOVE            = 0;   // accept the character, go to the next state
+    static final int SKIP            = 1;   // go to the next state, the character takes no column
+    static final int BEGIN_LEXEME    = 2;   // the character starts a lexeme of the next state
+    static final int NEW_LINE        = 3;
+    static final int BEGIN_COMMENT   = 4;
+    static final int SINGLE          = 5;   // the character alone is the token
+    static final int CLOSE           = 6;   // the character ends the token
+    static final int CLOSE_NOT_EQUAL = 7;   // ":=" reads as "!="
+    static final int RETRACT         = 8;   // the character ends the token, but is not part of it
+    static final int RETRACT_LESS    = 9;   // an identifier ended by anything but a delimiter reads as "<"
+    static final int ERROR           = 10;
+    static final int ERROR_CLOSE     = 11;
+    static final int ERROR_RETRACT   = 12;
+    static final int END_OF_FILE     = 13;
+
+    static final int     OTHER = 128;       // stands for every character from 128 up
+    static final byte[]  charClass = new byte[OTHER + 1];
+    static final int     classes;
+    static final short[] table;             // table[state * classes + charClass[c]]
+
+    static
+    {
+        // characters go into the same class when every state treats them alike.
+        java.util.List<short[]> entries = new java.util.ArrayList<>();
+        for (char c = 0; c <= OTHER; c++)
+        {
+            short[] column = new short[STATES];
+            for (int state = 0; state < STATES; state++)
+                column[state] = transition(state, c);
+            int k = 0;
+            while (k < entries.size() && !java.util.Arrays.equals(entries.get(k), column))
+                k++;
+            if (k == entries.size())
+                entries.add(column);
+            charClass[c] = (byte)k;
+        }
+        classes = entries.size();
+        table = new short[STATES * classes];
+        for (int k = 0; k < classes; k++)
+        {
+            for (int state = 0; state < STATES; state++)
+                table[state * classes + k] = entries.get(k)[state];
+        }
+    }
+
+    public TableLexer(java.io.Reader reader, Parser yyparser) throws Exception
+    {
+        super(reader, yyparser);
+    }
+
+    public TableLexer(java.io.Reader reader, Parser yyparser, int blockSize) throws Exception
+    {
+        super(reader, yyparser, blockSize);
+    }
+
+    public TableLexer(java.nio.file.Path path, Parser yyparser) throws Exception
+    {
+        super(path, yyparser);
+    }
+
+    TableLexer(java.nio.MappedByteBuffer mapped, int start, int end, int lineno, Parser yyparser)
+    {
+        super(mapped, start, end, lineno, yyparser);
+    }
+
+    public int next() throws Exception
+    {
+        int state = START;
+        while (true)
+        {
+            char c = readCharFromBuffer();
+            int entry = table[state * classes + charClass[c < OTHER ? c : OTHER]];
+            int target = entry & 0xFF;
+            switch (entry >>> 8)
+            {
+                case MOVE :
+                    accumulator++;
+                    state = target;
+                    continue;
+                case SKIP :
+                    state = target;
+                    continue;
+                case BEGIN_LEXEME :
+                    startLexeme();
+                    accumulator++;
+                    state = target;
+                    continue;
+                case NEW_LINE :
+                    lineno++;
+                    accumulator = 1;
+                    lexBegin = 1;
+                    continue;
+                case BEGIN_COMMENT :
+                    accumulator = 1;
+                    lineno++;
+                    lexBegin = 0;
+                    lexStart = -1;
+                    state = COMMENT;
+                    scanComment();
+                    continue;
+                case SINGLE :
+                    column = accumulator++;
+                    return single(target);
+                case CLOSE :
+                    accumulator++;
+                    column = lexBegin;
+                    lexBegin = accumulator;
+                    return token(target);
+                case CLOSE_NOT_EQUAL :
+                    accumulator++;
+                    column = lexBegin;
+                    lexBegin = accumulator;
+                    return constant(Parser.RELOP, NOT_EQUAL);
+                case RETRACT :
+                    column = lexBegin;
+                    lexBegin = accumulator;
+                    retract();
+                    return token(target);
+                case RETRACT_LESS :
+                    column = lexBegin;
+                    lexBegin = accumulator;
+                    retract();
+                    return constant(Parser.RELOP, LESS_THAN);
+                case ERROR :
+                    column = accumulator;
+                    failure = c == '_' ? LexicalErrors.UNDERSCORE : LexicalErrors.PERIOD;
+                    return Fail();
+                case ERROR_CLOSE :
+                    accumulator++;
+                    column = lexBegin;
+                    lexBegin = accumulator;
+                    failure = charAt(lexStart) == ':' ? LexicalErrors.COLON : LexicalErrors.BANG;
+                    return Fail();
+                case ERROR_RETRACT :
+                    accumulator++;
+                    column = lexBegin;
+                    lexBegin = accumulator;
+                    retract();
+                    failure = LexicalErrors.NUMBER;
+                    return Fail();
+                default :   // END_OF_FILE
+                    column = accumulator;
+                    return endOfFile();
+            }
+        }
+    }
+
+    static short entry(int action, int target)
+    {
+        return (short)(action << 8 | target);
+    }
+
+    // what the switch in Lexer.next() does with character c in a state, the case fall-throughs spelled out.
+    static short transition(int state, char c)
+    {
+        if (c == 0)
+            return entry(END_OF_FILE, 0);
+        boolean isLetter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        boolean isNumber = (c >= '0' && c <= '9');
+        switch (state)
+        {
+            case START :
+                if (isLetter)               return entry(BEGIN_LEXEME, ID + keywordStep(1, c));
+                if (isNumber)               return entry(BEGIN_LEXEME, NUMBER);
+                switch (c)
+                {
+                    case ' ' : case '\t' :  return entry(MOVE, START);
+                    case '\n' :             return entry(NEW_LINE, START);
+                    case '(' :              return entry(SINGLE, Parser.LPAREN);
+                    case ')' :              return entry(SINGLE, Parser.RPAREN);
+                    case '{' :              return entry(SINGLE, Parser.BEGIN);
+                    case '}' :              return entry(SINGLE, Parser.END);
+                    case '=' :              return entry(SINGLE, Parser.RELOP);
+                    case '+' : case '*' :   return entry(SINGLE, Parser.OP);
+                    case ';' :              return entry(SINGLE, Parser.SEMI);
+                    case ',' :              return entry(SINGLE, Parser.COMMA);
+                    case '<' :              return entry(BEGIN_LEXEME, LESS);
+                    case '>' :              return entry(BEGIN_LEXEME, GREATER);
+                    case '-' :              return entry(BEGIN_LEXEME, MINUS);
+                    case '/' :              return entry(BEGIN_LEXEME, SLASH);
+                    case ':' :              return entry(BEGIN_LEXEME, COLON);
+                    case '!' :              return entry(BEGIN_LEXEME, BANG);
+                    case '_' : case '.' :   return entry(ERROR, 0);
+                    default :               return entry(SKIP, START);     // '\r' and anything unknown is passed over
+                }
+            case COLON :                    // falls through to case 3 unless it reads "::"
+                if (c == ':')               return entry(CLOSE, Parser.TYPEOF);
+                if (c == '=')               return entry(CLOSE_NOT_EQUAL, 0);
+                return entry(ERROR_CLOSE, 0);
+            case BANG :
+                if (c == '=')               return entry(CLOSE, Parser.RELOP);
+                return entry(ERROR_CLOSE, 0);
+            case LESS :
+                if (c == '=')               return entry(CLOSE, Parser.RELOP);
+                if (c == '-')               return entry(CLOSE, Parser.ASSIGN);
+                return entry(RETRACT, Parser.RELOP);
+            case GREATER :
+                if (c == '=')               return entry(CLOSE, Parser.RELOP);
+                return entry(RETRACT, Parser.RELOP);
+            case MINUS :
+                if (c == '>')               return entry(CLOSE, Parser.FUNCRET);
+                return entry(RETRACT, Parser.OP);
+            case SLASH :
+                if (c == '/')               return entry(BEGIN_COMMENT, 0);
+                return entry(RETRACT, Parser.OP);
+            case COMMENT :
+                return entry(SKIP, c == '\n' ? START : COMMENT);
+            case NUMBER :
+                if (c == '.')               return entry(MOVE, PERIOD);
+                if (isNumber)               return entry(MOVE, NUMBER);
+                return entry(RETRACT, Parser.NUM);
+            case PERIOD :                   // a second period right after the first is an error
+                if (c == '.')               return entry(ERROR_RETRACT, 0);
+                if (isNumber)               return entry(MOVE, FRACTION);
+                return entry(RETRACT, Parser.NUM);
+            case FRACTION :                 // a second period after a digit ends the number, "1.23.4" reads as "1.23"
+                if (isNumber)               return entry(MOVE, FRACTION);
+                return entry(RETRACT, Parser.NUM);
+            default :                       // identifier at keyword trie node state - ID
+                int node = state - ID;
+                if (isLetter || isNumber || c == '_')
+                    return entry(MOVE, ID + keywordStep(node, c));
+                switch (c)
+                {
+                    case ' ' : case '\t' : case '\r' : case '\n' : case '(' : case ')' : case ';' : case '!' :
+                    case '+' : case '-'  : case '/'  : case '*'  : case '<' : case '=' : case '>' :
+                        return entry(RETRACT, keywordToken[node] != 0 ? keywordToken[node] : Parser.ID);
+                    default :               // falls through to case 200
+                        return entry(RETRACT_LESS, 0);
+                }
+        }
+    }
+}
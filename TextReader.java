@@ -0,0 +1,45 @@
+// a Reader over a CharSequence from an offset on, without copying it into a String first.
+// reset() points it at another text, so a Lexer that is reset for every input keeps the one it has.
+public class TextReader extends java.io.Reader
+{
+    CharSequence text;
+    int          next;
+
+    public TextReader(CharSequence text, int from)
+    {
+        reset(text, from);
+    }
+
+    public void reset(CharSequence text, int from)
+    {
+        this.text = text;
+        this.next = from;
+    }
+
+    public int read(char[] buffer, int offset, int length)
+    {
+        int n = Math.min(length, text.length() - next);
+        if (n <= 0)
+            return -1;
+        if (text instanceof String)
+        {
+            ((String)text).getChars(next, next + n, buffer, offset);
+            next += n;
+            return n;
+        }
+        if (text instanceof java.nio.CharBuffer && ((java.nio.CharBuffer)text).hasArray())
+        {
+            java.nio.CharBuffer b = (java.nio.CharBuffer)text;
+            System.arraycopy(b.array(), b.arrayOffset() + b.position() + next, buffer, offset, n);
+            next += n;
+            return n;
+        }
+        for (int i = 0; i < n; i++)
+            buffer[offset + i] = text.charAt(next++);
+        return n;
+    }
+
+    public void close()
+    {
+    }
+}
@@ -0,0 +1,142 @@
+// prints tokens as <NAME, token-attr:"lexeme", line:column>, the way Parser.yyparse() always has,
+// collected in a large char buffer and handed to the Writer a batch at a time.
+public class TextSink implements TokenSink
+{
+    static final char[] NEWLINE = System.lineSeparator().toCharArray();
+
+    final java.io.Writer out;
+    final char[]         buffer;
+    int                  used = 0;
+    int                  errors = 0;    // reported by error() since the last end()
+
+    public TextSink(java.io.OutputStream out)
+    {
+        this(new java.io.OutputStreamWriter(out), 1 << 16);
+    }
+
+    public TextSink(java.io.Writer out, int bufferSize)
+    {
+        this.out    = out;
+        this.buffer = new char[Math.max(64, bufferSize)];
+    }
+
+    public void token(int kind, CharSequence lexeme, int line, int column) throws Exception
+    {
+        append('<');
+        append(Parser.tokens[kind - 10]);
+        append(", token-attr:\"");
+        append(lexeme);
+        append("\", ");
+        append(line);
+        append(':');
+        append(column);
+        append('>');
+        newLine();
+    }
+
+    public void error(int category, int line, int column) throws Exception
+    {
+        append("Error! There is a lexical error at ");
+        append(line);
+        append(':');
+        append(column);
+        append(": ");
+        append(LexicalErrors.message(category));
+        append('.');
+        newLine();
+        errors++;
+    }
+
+    public void end(int status, int line, int column) throws Exception
+    {
+        if (status == 0)
+        {
+            append("Success!");
+        }
+        else if (errors > 0)
+        {
+            append(errors);
+            append(errors == 1 ? " lexical error." : " lexical errors.");
+        }
+        else
+        {
+            append("Error! There is a lexical error at ");
+            append(line);
+            append(':');
+            append(column);
+            append('.');
+        }
+        newLine();
+        errors = 0;
+    }
+
+    public void newLine() throws Exception
+    {
+        for (char c : NEWLINE)
+            append(c);
+    }
+
+    public void flush() throws Exception
+    {
+        drain();
+        out.flush();
+    }
+
+    void drain() throws Exception
+    {
+        out.write(buffer, 0, used);
+        used = 0;
+    }
+
+    void append(char c) throws Exception
+    {
+        if (used == buffer.length)
+            drain();
+        buffer[used++] = c;
+    }
+
+    void append(CharSequence s) throws Exception
+    {
+        int length = s.length();
+        if (used + length > buffer.length)
+            drain();
+        if (length > buffer.length)
+        {
+            out.append(s);
+            return;
+        }
+        for (int i = 0; i < length; i++)
+            buffer[used++] = s.charAt(i);
+    }
+
+    // the decimal digits of a non-negative int, without building a String.
+    void append(int n) throws Exception
+    {
+        if (used + 11 > buffer.length)
+            drain();
+        if (n < 0)
+        {
+            buffer[used++] = '-';
+            n = -n;
+        }
+        int end = used + digits(n);
+        used = end;
+        do
+        {
+            buffer[--end] = (char)('0' + n % 10);
+            n /= 10;
+        }
+        while (n != 0);
+    }
+
+    static int digits(int n)
+    {
+        int d = 1;
+        while (n >= 10)
+        {
+            n /= 10;
+            d++;
+        }
+        return d;
+    }
+}
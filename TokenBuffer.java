@@ -0,0 +1,274 @@
+// the tokens of a whole file, column by column in primitive arrays: 17 bytes a token where yylex() allocates a
+// ParserVal and a String or Character for every one. the lexemes are not copied, they are read on request from
+// the source the tokens were lexed from, the mapped file or the text.
+//
+// tokens are added from the cursor of a Lexer, read back by index, or replayed into a TokenSink.
+// tokens of an OffsetLexer keep no line and column, 9 bytes a token, those are looked up in its LineIndex on request.
+public class TokenBuffer
+{
+    // the tokens, like the cursor of the Lexer after each next(). a negative length stands for a fixed lexeme.
+    byte[] kinds;
+    int[]  starts;
+    int[]  lengths;
+    int[]  lines;       // null with positions
+    int[]  columns;
+    int    count = 0;
+    public final LineIndex positions;   // where lines and columns are looked up instead, may be null
+
+    // how lexing ended: 0 at the end of file and -1 on a lexical error, at lineno:column like the Lexer.
+    public int status;
+    public int lineno = 1;
+    public int column = 1;
+
+    java.nio.ByteBuffer bytes;  // the mapped file the tokens were lexed from
+    CharSequence        text;   // or the text
+
+    static final char[][] constants = {Lexer.LESS_THAN, Lexer.NOT_EQUAL};
+
+    public TokenBuffer(int capacity)
+    {
+        this(capacity, null);
+    }
+
+    public TokenBuffer(int capacity, LineIndex positions)
+    {
+        capacity = Math.max(16, capacity);
+        this.positions = positions;
+        kinds   = new byte[capacity];
+        starts  = new int[capacity];
+        lengths = new int[capacity];
+        if (positions == null)
+        {
+            lines   = new int[capacity];
+            columns = new int[capacity];
+        }
+    }
+
+    // room for the tokens of a source of size bytes to start with. a token every 32 bytes is fewer than most sources
+    // have, fill() grows the buffer from there to what the rest of the source needs at the rate it has had so far.
+    // room for a token every 4 bytes would set aside 4 bytes for every byte of the source before lexing, most of it
+    // never used by a source of long comments or identifiers.
+    static int capacity(long size)
+    {
+        return (int)Math.min(Integer.MAX_VALUE - 8, size / 32);
+    }
+
+    // lex a mapped file up to its end or the first error.
+    public static TokenBuffer lex(java.nio.file.Path path, boolean table) throws Exception
+    {
+        java.nio.MappedByteBuffer mapped = Lexer.map(path);
+        TokenBuffer tokens = new TokenBuffer(capacity(mapped.limit()));
+        tokens.bytes = mapped;
+        tokens.fill(table ? new TableLexer(mapped, 0, -1, 1, null) : new Lexer(mapped, 0, -1, 1, null), mapped.limit());
+        tokens.fit();
+        return tokens;
+    }
+
+    public static TokenBuffer lex(CharSequence text, boolean table) throws Exception
+    {
+        TokenBuffer tokens = new TokenBuffer(capacity(text.length()));
+        tokens.text = text;
+        tokens.fill(table ? new TableLexer(new TextReader(text, 0), null) : new Lexer(new TextReader(text, 0), null), text.length());
+        tokens.fit();
+        return tokens;
+    }
+
+    // lex with an OffsetLexer, the tokens keep no positions of their own.
+    public static TokenBuffer lexOffsets(java.nio.file.Path path) throws Exception
+    {
+        java.nio.MappedByteBuffer mapped = Lexer.map(path);
+        OffsetLexer lexer = new OffsetLexer(mapped, 0, -1, 1, null);
+        TokenBuffer tokens = new TokenBuffer(capacity(mapped.limit()), lexer.lines);
+        tokens.bytes = mapped;
+        tokens.fill(lexer, mapped.limit());
+        tokens.fit();
+        return tokens;
+    }
+
+    public static TokenBuffer lexOffsets(CharSequence text) throws Exception
+    {
+        OffsetLexer lexer = new OffsetLexer(new TextReader(text, 0), null);
+        TokenBuffer tokens = new TokenBuffer(capacity(text.length()), lexer.lines);
+        tokens.text = text;
+        tokens.fill(lexer, text.length());
+        tokens.fit();
+        return tokens;
+    }
+
+    // add the tokens the lexer reads up to the end of its input or an error, returns the status.
+    public int fill(Lexer lexer) throws Exception
+    {
+        return fill(lexer, 0);
+    }
+
+    // the same for a source size long, in the unit of the token starts. when the buffer is full, it grows to the
+    // tokens the whole source has at the rate so far and a sixteenth more, so a source of about the same tokens
+    // throughout grows once. it grows by half again at least, like add().
+    int fill(Lexer lexer, long size) throws Exception
+    {
+        int token;
+        while ((token = lexer.next()) > 0)
+        {
+            if (count == kinds.length && size > 0)
+            {
+                long expected = count * size / Math.max(1, lexer.tokenStart);
+                grow((int)Math.min(Integer.MAX_VALUE - 8, expected + (expected >> 4)));
+            }
+            add(lexer);
+        }
+        status = token;
+        lineno = lexer.lineno;
+        column = lexer.column;
+        return token;
+    }
+
+    // add the token the lexer has just read.
+    public void add(Lexer lexer)
+    {
+        if (count == kinds.length)
+            grow(count + 1);
+        kinds[count]   = (byte)lexer.tokenKind;
+        starts[count]  = lexer.tokenStart;
+        lengths[count] = lexer.tokenConstant == Lexer.LESS_THAN ? -1 : lexer.tokenConstant == Lexer.NOT_EQUAL ? -2 : lexer.tokenLength;
+        if (positions == null)
+        {
+            lines[count]   = lexer.lineno;
+            columns[count] = lexer.column;
+        }
+        count++;
+    }
+
+    // add the tokens of another buffer, with their lines moved down by lineDelta.
+    void append(TokenBuffer other, int lineDelta)
+    {
+        if (count + other.count > kinds.length)
+            grow(count + other.count);
+        System.arraycopy(other.kinds,   0, kinds,   count, other.count);
+        System.arraycopy(other.starts,  0, starts,  count, other.count);
+        System.arraycopy(other.lengths, 0, lengths, count, other.count);
+        System.arraycopy(other.columns, 0, columns, count, other.count);
+        for (int k = 0; k < other.count; k++)
+            lines[count + k] = other.lines[k] + lineDelta;
+        count += other.count;
+    }
+
+    // by half again, so a file of tens of millions of tokens does not need twice its size while it grows.
+    void grow(int min)
+    {
+        int n = Math.max(min, kinds.length + (kinds.length >> 1));
+        kinds   = java.util.Arrays.copyOf(kinds, n);
+        starts  = java.util.Arrays.copyOf(starts, n);
+        lengths = java.util.Arrays.copyOf(lengths, n);
+        if (positions == null)
+        {
+            lines   = java.util.Arrays.copyOf(lines, n);
+            columns = java.util.Arrays.copyOf(columns, n);
+        }
+    }
+
+    // trim() when more than a quarter of the room is unused, the buffer is kept as long as its tokens are.
+    void fit()
+    {
+        if (kinds.length - count > kinds.length / 4)
+            trim();
+    }
+
+    // drop the room no token uses.
+    public void trim()
+    {
+        if (count < kinds.length)
+        {
+            kinds   = java.util.Arrays.copyOf(kinds, count);
+            starts  = java.util.Arrays.copyOf(starts, count);
+            lengths = java.util.Arrays.copyOf(lengths, count);
+            if (positions == null)
+            {
+                lines   = java.util.Arrays.copyOf(lines, count);
+                columns = java.util.Arrays.copyOf(columns, count);
+            }
+        }
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    public int kind(int i)
+    {
+        return kinds[check(i)];
+    }
+
+    // offset of the lexeme in the source, in characters (bytes for a mapped file).
+    public int start(int i)
+    {
+        return starts[check(i)];
+    }
+
+    // length of the lexeme.
+    public int length(int i)
+    {
+        int length = lengths[check(i)];
+        return length >= 0 ? length : constants[-length - 1].length;
+    }
+
+    public int line(int i)
+    {
+        return positions != null ? positions.line(starts[check(i)]) : lines[check(i)];
+    }
+
+    public int column(int i)
+    {
+        return positions != null ? positions.column(starts[check(i)]) : columns[check(i)];
+    }
+
+    // the lexeme of token i, as Lexer.lexeme() read it.
+    public CharSequence lexeme(int i)
+    {
+        return lexeme(i, new Lexeme());
+    }
+
+    // the lexeme of token i in a view that is reused, like the one of the Lexer.
+    public CharSequence lexeme(int i, Lexeme view)
+    {
+        int length = lengths[check(i)];
+        if (length < 0)
+            return view.set(constants[-length - 1], 0, constants[-length - 1].length);
+        if (bytes != null)
+            return view.set(bytes, starts[i], length);
+        return view.set(text, starts[i], length);
+    }
+
+    int check(int i)
+    {
+        if (i >= count)
+            throw new IndexOutOfBoundsException("token " + i + " of " + count);
+        return i;
+    }
+
+    // hand the tokens to a sink the way Parser.yyparse() does, returns the status.
+    public int replay(TokenSink sink) throws Exception
+    {
+        Lexeme view = new Lexeme();
+        for (int i = 0; i < count; i++)
+            sink.token(kinds[i], lexeme(i, view), line(i), column(i));
+        sink.end(status, lineno, column);
+        sink.flush();
+        return status;
+    }
+
+    // approximate heap size of the buffer, arrays and their headers included. the source is not counted, positions is.
+    public long footprintBytes()
+    {
+        final int header = 16;
+        return header + 4 * 4 + 3 * 8
+             + header + 1L * kinds.length
+             + (positions == null ? 4 : 2) * (header + 4L * kinds.length)
+             + (positions == null ? 0 : positions.footprintBytes());
+    }
+
+    public String toString()
+    {
+        return count + " tokens, " + footprintBytes() + " bytes";
+    }
+}
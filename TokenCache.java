@@ -0,0 +1,265 @@
+// keeps the tokens of compiled files in a directory as .tok files, so unchanged files are replayed instead of lexed.
+// entries are named after the CRC32C and length of the source and Lexer.VERSION. when they take more than maxBytes
+// the least recently used ones are deleted. one TokenCache may be used by many threads at once.
+public class TokenCache
+{
+    public final java.nio.file.Path dir;
+    public final long               maxBytes;
+
+    // entry name to size in bytes, least recently used first
+    final java.util.LinkedHashMap<String, Long> entries = new java.util.LinkedHashMap<>(16, 0.75f, true);
+    long bytes = 0;
+
+    long hits      = 0;
+    long misses    = 0;
+    long evictions = 0;
+
+    public TokenCache(java.nio.file.Path dir, long maxBytes) throws Exception
+    {
+        this.dir      = dir;
+        this.maxBytes = maxBytes;
+        java.nio.file.Files.createDirectories(dir);
+        // what earlier runs left, oldest first
+        java.util.List<java.nio.file.Path> found = new java.util.ArrayList<>();
+        try (java.nio.file.DirectoryStream<java.nio.file.Path> s = java.nio.file.Files.newDirectoryStream(dir, "*.tok"))
+        {
+            for (java.nio.file.Path p : s)
+                found.add(p);
+        }
+        java.util.Map<java.nio.file.Path, Long> modified = new java.util.HashMap<>();
+        for (java.nio.file.Path p : found)
+            modified.put(p, java.nio.file.Files.getLastModifiedTime(p).toMillis());
+        found.sort(java.util.Comparator.comparing(modified::get));
+        for (java.nio.file.Path p : found)
+        {
+            long size = java.nio.file.Files.size(p);
+            entries.put(p.getFileName().toString(), size);
+            bytes += size;
+        }
+        evict();
+    }
+
+    // compiles source into sink: from the cache when it has the source, otherwise with a Lexer, or a TableLexer when
+    // table is set, caching the tokens. the source is lexed from the same read that hashes it, and the tokens are only
+    // cached when those bytes are the ones the entry is named after, not when the source changed in the meantime.
+    public int compile(java.nio.file.Path source, TokenSink sink, boolean table) throws Exception
+    {
+        long length = java.nio.file.Files.size(source);
+        int  hash   = TokenWriter.hash(source);
+        String name = name(length, hash);
+        byte[] cached = open(name, length, hash);
+        if (cached != null)
+        {
+            try (TokenReader reader = new TokenReader(new java.io.ByteArrayInputStream(cached)))
+            {
+                return LexerMetrics.replay(length, sink, reader::replay);
+            }
+        }
+
+        java.nio.file.Path temp = java.nio.file.Files.createTempFile(dir, name, ".part");
+        try
+        {
+            int status;
+            boolean unchanged;
+            try (Hashing in = new Hashing(java.nio.file.Files.newInputStream(source));
+                 java.io.OutputStream out = java.nio.file.Files.newOutputStream(temp))
+            {
+                java.io.Reader reader = new java.io.InputStreamReader(in, java.nio.charset.StandardCharsets.UTF_8);
+                Lexer lexer = table ? new TableLexer(reader, null) : new Lexer(reader, null);
+                TokenWriter writer = new TokenWriter(out, length, hash);
+                status = new Compiler(lexer).Compile(new Tee(sink, writer));
+                unchanged = in.rest(length, hash);
+            }
+            if (unchanged)
+                add(name, temp);
+            return status;
+        }
+        finally
+        {
+            java.nio.file.Files.deleteIfExists(temp);
+        }
+    }
+
+    static String name(long length, int hash)
+    {
+        return String.format("v%d-%08x-%x.tok", Lexer.VERSION, hash, length);
+    }
+
+    // the entry, read whole and checked up to its end record before any of it is replayed, or null on a miss.
+    byte[] open(String name, long length, int hash)
+    {
+        synchronized (this)
+        {
+            if (entries.get(name) == null)
+            {
+                misses++;
+                return null;
+            }
+        }
+        java.nio.file.Path file = dir.resolve(name);
+        try
+        {
+            byte[] entry = java.nio.file.Files.readAllBytes(file);
+            try (TokenReader reader = new TokenReader(new java.io.ByteArrayInputStream(entry)))
+            {
+                if (reader.sourceLength == length && reader.sourceHash == hash)
+                {
+                    while (reader.next() > 0)
+                        ;
+                    synchronized (this)
+                    {
+                        hits++;
+                    }
+                    java.nio.file.Files.setLastModifiedTime(file, java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis()));
+                    return entry;
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            // evicted by another thread or another process, not a token file, or cut short: lex the source
+        }
+        synchronized (this)
+        {
+            misses++;
+            Long size = entries.remove(name);
+            if (size != null)
+                bytes -= size;
+        }
+        return null;
+    }
+
+    // moves a fully written temp file into the cache.
+    void add(String name, java.nio.file.Path temp) throws Exception
+    {
+        long size = java.nio.file.Files.size(temp);
+        java.nio.file.Files.move(temp, dir.resolve(name), java.nio.file.StandardCopyOption.ATOMIC_MOVE, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        synchronized (this)
+        {
+            Long old = entries.put(name, size);
+            bytes += size - (old == null ? 0 : old);
+            evict();
+        }
+    }
+
+    // deletes least recently used entries until the cache fits in maxBytes.
+    void evict()
+    {
+        java.util.Iterator<java.util.Map.Entry<String, Long>> i = entries.entrySet().iterator();
+        while (bytes > maxBytes && i.hasNext())
+        {
+            java.util.Map.Entry<String, Long> e = i.next();
+            try
+            {
+                java.nio.file.Files.deleteIfExists(dir.resolve(e.getKey()));
+            }
+            catch (java.io.IOException ignored)
+            {
+                // still open somewhere, forget it anyway
+            }
+            bytes -= e.getValue();
+            i.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized long hits()
+    {
+        return hits;
+    }
+
+    public synchronized long misses()
+    {
+        return misses;
+    }
+
+    public synchronized long evictions()
+    {
+        return evictions;
+    }
+
+    public synchronized String toString()
+    {
+        return "token cache " + dir + ": " + entries.size() + " entries, " + bytes + " bytes, "
+             + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+
+    // the bytes read through it, counted and hashed like TokenWriter.hash() does.
+    static class Hashing extends java.io.FilterInputStream
+    {
+        final java.util.zip.CRC32C crc = new java.util.zip.CRC32C();
+        long count = 0;
+
+        Hashing(java.io.InputStream in)
+        {
+            super(in);
+        }
+
+        public int read() throws java.io.IOException
+        {
+            int b = in.read();
+            if (b >= 0)
+            {
+                crc.update(b);
+                count++;
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int offset, int length) throws java.io.IOException
+        {
+            int n = in.read(b, offset, length);
+            if (n > 0)
+            {
+                crc.update(b, offset, n);
+                count += n;
+            }
+            return n;
+        }
+
+        public long skip(long n) throws java.io.IOException
+        {
+            return read(new byte[(int)Math.min(n, 1 << 16)]);
+        }
+
+        // read what the lexer left after an error, and whether all of it was length bytes with this hash.
+        boolean rest(long length, int hash) throws java.io.IOException
+        {
+            byte[] block = new byte[1 << 16];
+            while (read(block, 0, block.length) >= 0)
+                ;
+            return count == length && (int)crc.getValue() == hash;
+        }
+    }
+
+    // sends the tokens to the caller's sink and to the TokenWriter filling the cache.
+    static class Tee implements TokenSink
+    {
+        final TokenSink first;
+        final TokenSink second;
+
+        Tee(TokenSink first, TokenSink second)
+        {
+            this.first  = first;
+            this.second = second;
+        }
+
+        public void token(int kind, CharSequence lexeme, int line, int column) throws Exception
+        {
+            first.token(kind, lexeme, line, column);
+            second.token(kind, lexeme, line, column);
+        }
+
+        public void end(int status, int line, int column) throws Exception
+        {
+            first.end(status, line, column);
+            second.end(status, line, column);
+        }
+
+        public void flush() throws Exception
+        {
+            first.flush();
+            second.flush();
+        }
+    }
+}
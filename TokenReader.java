@@ -0,0 +1,165 @@
+// replays a .tok file written by TokenWriter, one token at a time like Lexer.next().
+// only the current block of the file and the string pool are held, so the file can be of any size.
+public class TokenReader implements java.io.Closeable
+{
+    public int    lineno = 1;
+    public int    column = 0;
+    public int    tokenKind;
+    public long   sourceLength;
+    public int    sourceHash;
+
+    final java.io.InputStream in;
+    final byte[]              buffer = new byte[1 << 16];
+    int                       used   = 0;
+    int                       limit  = 0;
+
+    char[] poolChars  = new char[256];  // the pooled lexemes back to back
+    int[]  poolStarts = new int[17];    // where each one starts, and one past the last
+    int    poolSize   = 0;
+    int    poolLimit;
+    char[] literal    = new char[64];   // a lexeme that is not pooled
+    Lexeme lexeme     = new Lexeme();
+    int    status     = 1;              // until the end record is read
+
+    public TokenReader(java.io.InputStream in) throws Exception
+    {
+        this.in = in;
+        for (byte b : TokenWriter.MAGIC)
+        {
+            if (get() != b)
+                throw new java.io.IOException("not a token file");
+        }
+        int version = (int)varint();
+        if (version != TokenWriter.VERSION)
+            throw new java.io.IOException("token file version " + version + ", expected " + TokenWriter.VERSION);
+        sourceLength = varint();
+        sourceHash   = get() << 24 | get() << 16 | get() << 8 | get();
+        poolLimit    = (int)varint();
+    }
+
+    public TokenReader(java.nio.file.Path file) throws Exception
+    {
+        this(java.nio.file.Files.newInputStream(file));
+    }
+
+    // the next token: its kind, 0 at the end of file and -1 on a lexical error, as Lexer.next() returns them.
+    public int next() throws Exception
+    {
+        if (status != 1)
+            return tokenKind = status;
+        int kind = (int)varint();
+        if (kind - 10 >= Parser.tokens.length)
+            throw new java.io.IOException("token kind " + kind);
+        int delta = unzigzag((int)varint());
+        int col = unzigzag((int)varint());
+        lineno += delta;
+        column = delta == 0 ? column + col : col;
+        if (kind < 10)
+        {
+            status = kind == 0 ? 0 : -1;
+            in.close();
+            return tokenKind = status;
+        }
+        int ref = (int)varint();
+        if (ref >= 2)
+        {
+            int id = ref - 2;
+            if (id >= poolSize)
+                throw new java.io.IOException("pool entry " + id + " of " + poolSize);
+            lexeme.set(poolChars, poolStarts[id], poolStarts[id + 1] - poolStarts[id]);
+        }
+        else
+        {
+            int length = (int)varint();
+            if (ref == 1 && poolSize < poolLimit)
+            {
+                int start = poolStarts[poolSize];
+                if (start + length > poolChars.length)
+                    poolChars = java.util.Arrays.copyOf(poolChars, Math.max(start + length, poolChars.length * 2));
+                if (poolSize + 2 > poolStarts.length)
+                    poolStarts = java.util.Arrays.copyOf(poolStarts, poolStarts.length * 2);
+                for (int i = 0; i < length; i++)
+                    poolChars[start + i] = (char)varint();
+                poolStarts[++poolSize] = start + length;
+                lexeme.set(poolChars, start, length);
+            }
+            else
+            {
+                if (length > literal.length)
+                    literal = new char[Math.max(length, literal.length * 2)];
+                for (int i = 0; i < length; i++)
+                    literal[i] = (char)varint();
+                lexeme.set(literal, 0, length);
+            }
+        }
+        return tokenKind = kind;
+    }
+
+    // closes the file before the end record is read, after it the file is closed already.
+    public void close() throws java.io.IOException
+    {
+        in.close();
+    }
+
+    // the lexeme of the current token, valid until the next call to next().
+    public Lexeme lexeme()
+    {
+        return lexeme;
+    }
+
+    // sends the rest of the file to a sink, and returns 0 or -1 like Parser.yyparse().
+    public int replay(TokenSink sink) throws Exception
+    {
+        while (true)
+        {
+            int kind = next();
+            if (kind == 0 || kind == -1)
+            {
+                sink.end(kind, lineno, column);
+                sink.flush();
+                return kind;
+            }
+            sink.token(kind, lexeme, lineno, column);
+        }
+    }
+
+    // whether the file was written from this source, as far as its length and CRC32C tell.
+    public boolean matches(java.nio.file.Path source) throws Exception
+    {
+        return java.nio.file.Files.size(source) == sourceLength && TokenWriter.hash(source) == sourceHash;
+    }
+
+    long varint() throws Exception
+    {
+        long n = 0;
+        for (int shift = 0; ; shift += 7)
+        {
+            int b = get();
+            n |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return n;
+            if (shift > 56)
+                throw new java.io.IOException("varint too long");
+        }
+    }
+
+    int get() throws Exception
+    {
+        if (used == limit)
+        {
+            limit = in.read(buffer, 0, buffer.length);
+            used = 0;
+            if (limit <= 0)
+            {
+                limit = 0;
+                throw new java.io.EOFException("token file ends before its end record");
+            }
+        }
+        return buffer[used++] & 0xFF;
+    }
+
+    static int unzigzag(int n)
+    {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
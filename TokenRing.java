@@ -0,0 +1,236 @@
+// a bounded queue of tokens from one lexer thread to one parser thread, without locks. the tokens are kept in
+// primitive slots like TokenBuffer keeps them, the lexemes stay in the source both threads can read.
+// each side moves a cursor of its own and makes it visible to the other only every batch tokens, or before it
+// has to wait, so the threads touch shared memory once a batch rather than once a token.
+//
+// a side that finds nothing to do spins, then yields or parks as wait says. a parked side is unparked by the
+// other one as soon as it publishes.
+public class TokenRing
+{
+    public static final int SPIN  = 0;  // Thread.onSpinWait() until the other side is there, for a core each
+    public static final int YIELD = 1;  // spin a while, then Thread.yield() between looks
+    public static final int PARK  = 2;  // spin a while, then yield, then park until the other side publishes
+
+    public static final String[] WAITS = {"spin", "yield", "park"};
+
+    static final int SPINS  = 128;
+    static final int YIELDS = 16;
+
+    final int    capacity;
+    final int    mask;
+    final int    batch;
+    final int    wait;
+    final byte[] kinds;
+    final int[]  starts;
+    final int[]  lengths;   // negative for a fixed lexeme, as in TokenBuffer
+    final int[]  lines;
+    final int[]  columns;
+    final int[]  symbols;
+
+    // longs before the fields of a cursor, so two cursors never share a cache line.
+    static class Padding
+    {
+        long p0, p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    // where one side is. only that side writes it, the other reads published and parked.
+    static final class Cursor extends Padding
+    {
+        long            position;   // the next slot to fill, or to take
+        long            limit;      // position can go up to here before the other side has to be looked at again
+        volatile long   published;  // position as the other side sees it
+        volatile Thread parked;     // the thread of this side while it is parked
+        long            q0, q1, q2, q3, q4, q5, q6, q7;
+    }
+
+    final Cursor producer = new Cursor();
+    final Cursor consumer = new Cursor();
+
+    // how the producer ended, written before ended is set and read after it is.
+    int               status;
+    int               lineno;
+    int               column;
+    Throwable         failure;
+    volatile boolean  ended;
+    volatile boolean  closed;       // the consumer gave up, the producer stops
+
+    // capacity and batch are rounded up to powers of two, batch to at most half the capacity.
+    public TokenRing(int capacity, int batch, int wait)
+    {
+        if (capacity < 2 || batch < 1)
+            throw new IllegalArgumentException("capacity " + capacity + " and batch " + batch + " have to be above 1 and 0");
+        if (wait < SPIN || wait > PARK)
+            throw new IllegalArgumentException("unknown wait strategy " + wait);
+        this.capacity = powerOfTwo(capacity);
+        this.mask     = this.capacity - 1;
+        this.batch    = Math.min(this.capacity / 2, powerOfTwo(batch));
+        this.wait     = wait;
+        kinds   = new byte[this.capacity];
+        starts  = new int[this.capacity];
+        lengths = new int[this.capacity];
+        lines   = new int[this.capacity];
+        columns = new int[this.capacity];
+        symbols = new int[this.capacity];
+        producer.limit = this.capacity;
+    }
+
+    static int powerOfTwo(int n)
+    {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    // the wait strategy named like in WAITS.
+    public static int wait(String name)
+    {
+        for (int i = 0; i < WAITS.length; i++)
+        {
+            if (WAITS[i].equals(name))
+                return i;
+        }
+        throw new IllegalArgumentException("unknown wait strategy " + name + ", use spin, yield or park");
+    }
+
+    // producer: add the token the lexer has just read, waiting while the ring is full.
+    // returns false when the consumer has closed the ring, and nothing more should be put.
+    boolean put(Lexer lexer)
+    {
+        Cursor p = producer;
+        if (p.position == p.limit && !room())
+            return false;
+        int i = (int)p.position & mask;
+        kinds[i]   = (byte)lexer.tokenKind;
+        starts[i]  = lexer.tokenStart;
+        lengths[i] = lexer.tokenConstant == Lexer.LESS_THAN ? -1 : lexer.tokenConstant == Lexer.NOT_EQUAL ? -2 : lexer.tokenLength;
+        lines[i]   = lexer.lineno;
+        columns[i] = lexer.column;
+        symbols[i] = lexer.tokenSymbol;
+        if ((++p.position & (batch - 1)) == 0)
+            publish(p, consumer);
+        return true;
+    }
+
+    // producer: the last token is in, lexing ended with status at lineno:column, or failed.
+    void end(int status, int lineno, int column, Throwable failure)
+    {
+        this.status  = status;
+        this.lineno  = lineno;
+        this.column  = column;
+        this.failure = failure;
+        producer.published = producer.position;
+        ended = true;
+        wake(consumer);
+    }
+
+    // producer: wait for the consumer to free a slot. false when it closed the ring instead.
+    boolean room()
+    {
+        Cursor p = producer;
+        publish(p, consumer);   // the consumer may be waiting for the tokens of an unfinished batch
+        for (int n = 0; ; n++)
+        {
+            long freed = consumer.published;
+            if (freed + capacity > p.position)
+            {
+                p.limit = freed + capacity;
+                return true;
+            }
+            if (closed)
+                return false;
+            if (pause(n))
+            {
+                p.parked = Thread.currentThread();
+                if (consumer.published + capacity <= p.position && !closed)
+                    java.util.concurrent.locks.LockSupport.park(this);
+                p.parked = null;
+            }
+        }
+    }
+
+    // consumer: move the next token into the cursor of lexer and return its kind,
+    // or once the producer has ended and every token was taken, its status, 0 at the end of file and -1 on an error.
+    int take(Lexer lexer)
+    {
+        Cursor c = consumer;
+        if (c.position == c.limit && !tokens())
+            return status;
+        int i = (int)c.position & mask;
+        int length = lengths[i];
+        lexer.tokenKind     = kinds[i];
+        lexer.tokenStart    = starts[i];
+        lexer.tokenLength   = length >= 0 ? length : TokenBuffer.constants[-length - 1].length;
+        lexer.tokenConstant = length >= 0 ? null : TokenBuffer.constants[-length - 1];
+        lexer.lineno        = lines[i];
+        lexer.column        = columns[i];
+        lexer.tokenSymbol   = symbols[i];
+        if ((++c.position & (batch - 1)) == 0)
+            publish(c, producer);
+        return lexer.tokenKind;
+    }
+
+    // consumer: wait for the producer to publish more tokens. false when it ended and there are none.
+    boolean tokens()
+    {
+        Cursor c = consumer;
+        publish(c, producer);   // the producer may be waiting for room
+        for (int n = 0; ; n++)
+        {
+            long filled = producer.published;
+            if (filled > c.position)
+            {
+                c.limit = filled;
+                return true;
+            }
+            if (ended)
+            {
+                if (producer.published > c.position)
+                    continue;   // published just before it ended
+                return false;
+            }
+            if (pause(n))
+            {
+                c.parked = Thread.currentThread();
+                if (producer.published == c.position && !ended)
+                    java.util.concurrent.locks.LockSupport.park(this);
+                c.parked = null;
+            }
+        }
+    }
+
+    // consumer: stop taking tokens, a producer waiting for room stops putting them.
+    void close()
+    {
+        closed = true;
+        wake(producer);
+    }
+
+    static void publish(Cursor self, Cursor other)
+    {
+        self.published = self.position;
+        wake(other);
+    }
+
+    // a parked side looks again. both sides write their own cursor before reading the other one,
+    // so either the publisher sees the parked thread here or the parking side sees what was published.
+    static void wake(Cursor other)
+    {
+        Thread t = other.parked;
+        if (t != null)
+            java.util.concurrent.locks.LockSupport.unpark(t);
+    }
+
+    // between two looks at the other side, the n-th in a row. true when the caller should park now.
+    boolean pause(int n)
+    {
+        if (wait == SPIN || n < SPINS)
+        {
+            Thread.onSpinWait();
+            return false;
+        }
+        if (wait == YIELD || n < SPINS + YIELDS)
+        {
+            Thread.yield();
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,19 @@
+// where Parser.yyparse() sends the tokens it reads.
+public interface TokenSink
+{
+    // one token, the lexeme is only valid during the call.
+    void token(int kind, CharSequence lexeme, int line, int column) throws Exception;
+
+    // parsing ended: status 0 at the end of file, -1 on a lexical error at line:column.
+    // after errors were reported, -1 and the position where lexing ended.
+    void end(int status, int line, int column) throws Exception;
+
+    // a lexical error the Lexer recovered from, one of the LexicalErrors categories. reported before end().
+    default void error(int category, int line, int column) throws Exception
+    {
+    }
+
+    default void flush() throws Exception
+    {
+    }
+}
@@ -0,0 +1,127 @@
+// writes tokens in the binary .tok format, which TokenReader replays without lexing the source again.
+//
+//   header   'M' 'T' 'O' 'K', version, source length, CRC32C of the source (4 bytes), pool limit
+//   token    kind, line delta, column, lexeme
+//   end      0 at the end of file or 1 on a lexical error, line delta, column
+//
+// numbers are varints, 7 bits a byte with the high bit set on all but the last byte. line deltas and columns are
+// zigzag encoded; the column is relative to the previous token's column when the line did not change.
+// a lexeme is 0 followed by its length and characters, 1 followed by the same to add it to the pool,
+// or 2 + n for entry n of the pool. the pool holds at most pool limit entries.
+public class TokenWriter implements TokenSink
+{
+    static final byte[] MAGIC      = {'M', 'T', 'O', 'K'};
+    static final int    VERSION    = 1;
+    static final int    POOL_LIMIT = 1 << 16;
+
+    final java.io.OutputStream out;
+    final byte[]               buffer = new byte[1 << 16];
+    int                        used   = 0;
+
+    final SymbolTable pool = new SymbolTable();
+    int               line = 1;
+    int               column = 0;
+
+    public TokenWriter(java.io.OutputStream out, long sourceLength, int sourceHash) throws Exception
+    {
+        this.out = out;
+        for (byte b : MAGIC)
+            put(b);
+        varint(VERSION);
+        varint(sourceLength);
+        put(sourceHash >>> 24);
+        put(sourceHash >>> 16);
+        put(sourceHash >>> 8);
+        put(sourceHash);
+        varint(POOL_LIMIT);
+    }
+
+    public void token(int kind, CharSequence lexeme, int line, int column) throws Exception
+    {
+        varint(kind);
+        position(line, column);
+        int size = pool.size();
+        int id = size < POOL_LIMIT ? pool.intern(lexeme) : pool.find(lexeme);
+        if (id < 0 || id == size)
+        {
+            varint(id < 0 ? 0 : 1);
+            chars(lexeme);
+        }
+        else
+        {
+            varint(2 + id);
+        }
+    }
+
+    public void end(int status, int line, int column) throws Exception
+    {
+        varint(status == 0 ? 0 : 1);
+        position(line, column);
+    }
+
+    public void flush() throws Exception
+    {
+        out.write(buffer, 0, used);
+        used = 0;
+        out.flush();
+    }
+
+    void position(int line, int column) throws Exception
+    {
+        int delta = line - this.line;
+        varint(zigzag(delta));
+        varint(zigzag(delta == 0 ? column - this.column : column));
+        this.line   = line;
+        this.column = column;
+    }
+
+    void chars(CharSequence s) throws Exception
+    {
+        int length = s.length();
+        varint(length);
+        for (int i = 0; i < length; i++)
+            varint(s.charAt(i));
+    }
+
+    void varint(long n) throws Exception
+    {
+        while ((n & ~0x7FL) != 0)
+        {
+            put((int)(n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        put((int)n);
+    }
+
+    void put(int b) throws Exception
+    {
+        if (used == buffer.length)
+        {
+            out.write(buffer, 0, used);
+            used = 0;
+        }
+        buffer[used++] = (byte)b;
+    }
+
+    static int zigzag(int n)
+    {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    // the CRC32C of a file, as written into the header.
+    public static int hash(java.nio.file.Path source) throws Exception
+    {
+        java.util.zip.CRC32C crc = new java.util.zip.CRC32C();
+        try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(source))
+        {
+            java.nio.ByteBuffer block = java.nio.ByteBuffer.allocateDirect(1 << 16);
+            while (channel.read(block) >= 0)
+            {
+                block.flip();
+                crc.update(block);
+                block.clear();
+            }
+        }
+        return (int)crc.getValue();
+    }
+}
@@ -0,0 +1,10 @@
+#!/bin/sh
+# build the compiler and the benchmarks into out/ and run LexerBench, or another benchmark given with -c.
+#   ./bench.sh [-c KeywordBench] [options]
+set -e
+cd "$(dirname "$0")"
+main=LexerBench
+if [ "$1" = "-c" ]; then main=$2; shift 2; fi
+mkdir -p out
+javac -d out *.java bench/*.java
+exec java ${JAVA_OPTS:--Xms1g -Xmx1g} -cp out "$main" "$@"
@@ -0,0 +1,243 @@
+// parsing a large MinC program with LalrParser into its arena Ast, against only lexing it, and against building
+// the same tree out of objects, a Node with a list of children for every node like a hand-written parser would.
+// the rows of the parsers count nodes where the lexer counts tokens. the arena is measured by footprintBytes(),
+// the object tree as the heap still in use after a GC while it is held.
+//
+//   ./bench.sh -c AstBench [--size 16m] [--table]
+public class AstBench
+{
+    public static void main(String[] args) throws Exception
+    {
+        long size = 16 << 20;
+        boolean table = false;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--size"       : size = Bench.parseSize(args[++i]); break;
+                case "--table"      : table = true; break;
+                case "--warmup"     : Bench.warmups    = Integer.parseInt(args[++i]); break;
+                case "--iterations" : Bench.iterations = Integer.parseInt(args[++i]); break;
+                default :
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        java.nio.file.Path path = program(size).toPath();
+        boolean t = table;
+        long bytes = java.nio.file.Files.size(path);
+        Bench.measure("lexer only", bytes, () ->
+        {
+            Lexer lexer = t ? new TableLexer(path, null) : new Lexer(path, null);
+            long n = 0;
+            while (lexer.next() > 0)
+                n++;
+            return n;
+        });
+        Bench.measure("LalrParser, arena Ast", bytes, () -> parse(new LalrParser(path, t)).ast.size());
+        Bench.measure("LalrParser, object nodes", bytes, () -> ((ObjectParser)parse(new ObjectParser(path, t))).count);
+
+        LalrParser arena = parse(new LalrParser(path, table));
+        long arenaBytes = arena.ast.footprintBytes() + arena.tokens.footprintBytes();
+        int nodes = arena.ast.size();
+        arena = null;
+        long before = TokenBufferBench.used();
+        Node root = ((ObjectParser)parse(new ObjectParser(path, table))).root();
+        long objectBytes = TokenBufferBench.used() - before;
+        System.out.printf("retained %d nodes: arena Ast with its tokens %5.1f B/node, object nodes %5.1f B/node (%s)%n",
+                          nodes, (double)arenaBytes / nodes, (double)objectBytes / nodes, root.kind == Ast.PROGRAM ? "PROGRAM" : "?");
+    }
+
+    static LalrParser parse(LalrParser parser) throws Exception
+    {
+        if (parser.parse() != 0)
+            throw new IllegalStateException("the program does not parse, at " + parser.lineno + ":" + parser.column);
+        return parser;
+    }
+
+    // a node of the object tree, with its token copied out as a String.
+    static final class Node
+    {
+        final int    kind;
+        final String text;
+        final int    line;
+        final int    column;
+        final java.util.List<Node> children = new java.util.ArrayList<>();
+
+        Node(int kind, String text, int line, int column)
+        {
+            this.kind   = kind;
+            this.text   = text;
+            this.line   = line;
+            this.column = column;
+        }
+    }
+
+    // builds Nodes from the reductions of LalrParser instead of the arena, keeping them in a stack beside its own.
+    static final class ObjectParser extends LalrParser
+    {
+        Node[] nodes = new Node[64];
+        long   count;
+
+        ObjectParser(java.nio.file.Path path, boolean table) throws Exception
+        {
+            super(path, table);
+        }
+
+        @Override
+        void reduce(int rule, int base)
+        {
+            if (nodes.length < values.length)
+                nodes = java.util.Arrays.copyOf(nodes, values.length);
+            int[] action = ACTIONS[rule];
+            switch (action[0])
+            {
+                case PASS :
+                    nodes[base] = nodes[base + action[1]];
+                    break;
+                case EMPTY :
+                    nodes[base] = null;
+                    break;
+                case LIST :
+                {
+                    Node list = node(action[1], -1);
+                    if (action.length > 2)
+                        list.children.add(nodes[base + action[2]]);
+                    nodes[base] = list;
+                    break;
+                }
+                case APPEND :
+                {
+                    Node list = nodes[base + action[1]];
+                    list.children.add(nodes[base + action[2]]);
+                    nodes[base] = list;
+                    break;
+                }
+                default :
+                {
+                    Node node = node(action[0], action[1] < 0 ? -1 : values[base + action[1]]);
+                    for (int i = 2; i < action.length; i++)
+                    {
+                        if (nodes[base + action[i]] != null)
+                            node.children.add(nodes[base + action[i]]);
+                    }
+                    nodes[base] = node;
+                }
+            }
+        }
+
+        // the PROGRAM, once parse() accepted it.
+        Node root()
+        {
+            return nodes[sp];
+        }
+
+        Node node(int kind, int token)
+        {
+            count++;
+            if (token < 0)
+                return new Node(kind, null, 0, 0);
+            return new Node(kind, tokens.lexeme(token).toString(), tokens.line(token), tokens.column(token));
+        }
+    }
+
+    // a program of functions with about 16 statements each, nested up to three deep, until it is size bytes.
+    // every identifier is followed by a blank, the Lexer ends identifiers at ',' and ':' with an error.
+    static java.io.File program(long size) throws Exception
+    {
+        java.io.File dir = new java.io.File("bench/corpus");
+        dir.mkdirs();
+        java.io.File f = new java.io.File(dir, "program-" + size + ".minc");
+        if (f.length() >= size)
+            return f;
+        java.util.Random random = new java.util.Random(470);
+        StringBuilder b = new StringBuilder();
+        try (java.io.Writer w = new java.io.BufferedWriter(new java.io.FileWriter(f), 1 << 16))
+        {
+            long written = 0;
+            for (int n = 0; written < size; n++)
+            {
+                b.setLength(0);
+                b.append("func f").append(n).append(" ( a :: int , int b ) -> int \n{\n    var int x ;\n    var y :: int ;\n");
+                for (int i = 0; i < 16; i++)
+                    statement(b, random, 1);
+                b.append("}\n");
+                w.append(b);
+                written += b.length();
+            }
+        }
+        return f;
+    }
+
+    static final String[] NAMES     = {"a", "b", "x", "y", "count", "total_12", "index"};
+    static final String[] OPERATORS = {"+", "-", "*", "/", "<", ">=", "!=", "="};
+
+    static void statement(StringBuilder b, java.util.Random random, int depth)
+    {
+        for (int i = 0; i < depth; i++)
+            b.append("    ");
+        switch (random.nextInt(depth < 3 ? 6 : 3))
+        {
+            case 0 :
+                b.append("x <- ");
+                expression(b, random, 0);
+                b.append(" ;\n");
+                break;
+            case 1 :
+                b.append("print ");
+                expression(b, random, 0);
+                b.append(" ;\n");
+                break;
+            case 2 :
+                b.append("y <- g ( ");
+                expression(b, random, 1);
+                b.append(" , ");
+                expression(b, random, 1);
+                b.append(" ) ;\n");
+                break;
+            case 3 :
+                b.append("if ( ");
+                expression(b, random, 1);
+                b.append(" )\n");
+                statement(b, random, depth + 1);
+                if (random.nextBoolean())
+                {
+                    for (int i = 0; i < depth; i++)
+                        b.append("    ");
+                    b.append("else\n");
+                    statement(b, random, depth + 1);
+                }
+                break;
+            case 4 :
+            case 5 :
+                b.append(random.nextBoolean() ? "{\n" : "while ( x > 0 ) {\n");
+                statement(b, random, depth + 1);
+                statement(b, random, depth + 1);
+                for (int i = 0; i < depth; i++)
+                    b.append("    ");
+                b.append("}\n");
+                break;
+        }
+    }
+
+    static void expression(StringBuilder b, java.util.Random random, int depth)
+    {
+        switch (random.nextInt(depth < 3 ? 5 : 2))
+        {
+            case 0 : b.append(NAMES[random.nextInt(NAMES.length)]); break;
+            case 1 : b.append(random.nextInt(1000)); break;
+            case 2 :
+            case 3 :
+                expression(b, random, depth + 1);
+                b.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+                expression(b, random, depth + 1);
+                break;
+            case 4 :
+                b.append("( ");
+                expression(b, random, depth + 1);
+                b.append(" )");
+                break;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+// a small stand-in for JMH, for bench.sh and its plain javac build: warmup and measured iterations of one operation.
+// the Maven build runs LexerBench and TokenBufferBench under JMH itself, see jmh/pom.xml.
+// time is taken with nanoTime, allocation with the per-thread counter of com.sun.management.ThreadMXBean,
+// which is what -prof gc reports as gc.alloc.rate.norm.
+public class Bench
+{
+    public interface Operation
+    {
+        long run() throws Exception;    // one pass over the input, returns the number of tokens
+    }
+
+    static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean)java.lang.management.ManagementFactory.getThreadMXBean();
+
+    public static int warmups    = 5;
+    public static int iterations = 10;
+
+    // run op and print one line: time per op, MB/s, tokens/s and allocation per op and per token.
+    public static void measure(String name, long bytes, Operation op) throws Exception
+    {
+        long tokens = 0;
+        for (int i = 0; i < warmups; i++)
+            tokens = op.run();
+
+        long[] times = new long[iterations];
+        long allocated = 0;
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < iterations; i++)
+        {
+            long a0 = threads.getThreadAllocatedBytes(thread);
+            long t0 = System.nanoTime();
+            tokens = op.run();
+            times[i] = System.nanoTime() - t0;
+            allocated += threads.getThreadAllocatedBytes(thread) - a0;
+        }
+        java.util.Arrays.sort(times);
+        double median = times[iterations / 2] / 1e9;
+        double perOp  = (double)allocated / iterations;
+        System.out.printf("%-40s %10.3f ms/op %9.1f MB/s %8.2f Mtok/s %12.0f B/op %8.2f B/tok%n",
+                          name, median * 1e3, bytes / 1e6 / median, tokens / 1e6 / median, perOp, tokens == 0 ? 0 : perOp / tokens);
+    }
+
+    // "64k", "16m", "1g" and plain byte counts.
+    public static long parseSize(String s)
+    {
+        s = s.trim().toLowerCase();
+        long unit = 1;
+        switch (s.charAt(s.length() - 1))
+        {
+            case 'k' : unit = 1L << 10; break;
+            case 'm' : unit = 1L << 20; break;
+            case 'g' : unit = 1L << 30; break;
+        }
+        return Long.parseLong(unit == 1 ? s : s.substring(0, s.length() - 1)) * unit;
+    }
+}
@@ -0,0 +1,617 @@
+// checks the lexers against the tests and against each other. golden compiles test*.minc with every engine and
+// compares the output with testsolu*.txt. the other sections lex random texts with every engine of the section and
+// compare what they made of each text, token for token with line and column, the end and any errors, with the first
+// engine, which is the Lexer reading the text through a Reader. the texts are made of pieces that fall on the edges
+// of the lexer: keywords and their prefixes, numbers with too many points, comments at the end of the input, '\r',
+// NULs, characters the lexer does not know and ones that take several bytes in a file.
+//
+// numbers lexes random texts of numbers and compares the values the lexer decodes from the input with what
+// Integer.parseInt, Double.parseDouble and BigDecimal make of the lexeme as a String.
+//
+//   ./bench.sh -c Check [--iterations 20000] [--seed 42] [golden] [engines] ...
+// runs every section when none is given, prints the first texts a section got wrong and exits with 1 if any did.
+public class Check
+{
+    static final String[] PIECES = {
+        "a", "bc", "z", "Q", "x_1", "printx", "whil", "abcdefghijKLMNOP_12345",
+        "int", "print", "var", "func", "if", "else", "while", "void",
+        "0", "9", "12", "3.5", "0.123456789", "12345678901234567", "1.2.3", "3..", "3..4", ".5", "_", "_a", ".",
+        "(", ")", "{", "}", ";", ",", "<", ">", "=", "<=", ">=", "!=", "<-", "->", "+", "-", "*", "/",
+        "!", "!x", ":", "::", ":=", ":x", "@",
+        " ", "          ", "\t", "\t\t \t    ", "\n", "\n", "\r\n", "\r", "\u0000",
+        "//", "// c _ . ! x 1.2\n", "// comment \u00e9 with \u20ac several words in it 1.2.3 __ ..\n", "//no newline at the end",
+        "\u00e9", "\u20ac", "\u0080", "\ud83d\ude00",
+    };
+
+    // what an engine made of a text, which file holds in UTF-8.
+    interface Engine
+    {
+        String run(String text, java.nio.file.Path file) throws Exception;
+    }
+
+    static int  iterations = 20000;
+    static long seed       = 42;
+    static int  failed     = 0;     // sections with a mismatch
+
+    public static void main(String[] args) throws Exception
+    {
+        java.util.List<String> sections = new java.util.ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--iterations" : iterations = Integer.parseInt(args[++i]); break;
+                case "--seed"       : seed = Long.parseLong(args[++i]); break;
+                default :
+                    if (args[i].startsWith("--"))
+                    {
+                        System.err.println("unknown option " + args[i]);
+                        System.exit(2);
+                    }
+                    sections.add(args[i]);
+            }
+        }
+        if (sections.isEmpty())
+            sections = java.util.Arrays.asList("golden", "engines", "recovery", "parallel", "incremental", "numbers", "offsets", "driver");
+
+        for (String section : sections)
+        {
+            switch (section)
+            {
+                case "golden"  : golden(); break;
+                case "engines" : engines(); break;
+                case "recovery" : recovery(); break;
+                case "parallel" : parallel(); break;
+                case "incremental" : incremental(); break;
+                case "numbers" : numbers(); break;
+                case "offsets" : offsets(); break;
+                case "driver"  : driver(); break;
+                default :
+                    System.err.println("unknown section " + section);
+                    System.exit(2);
+            }
+        }
+        System.exit(failed > 0 ? 1 : 0);
+    }
+
+    // test*.minc with the Lexer and the TableLexer, read through a Reader and mapped, against testsolu*.txt.
+    static void golden() throws Exception
+    {
+        int files = 0, mismatches = 0;
+        for (int i = 1; ; i++)
+        {
+            java.nio.file.Path test = java.nio.file.Paths.get("test" + i + ".minc");
+            java.nio.file.Path solution = java.nio.file.Paths.get("testsolu" + i + ".txt");
+            if (!java.nio.file.Files.exists(test) || !java.nio.file.Files.exists(solution))
+                break;
+            files++;
+            String expected = lines(new String(java.nio.file.Files.readAllBytes(solution), java.nio.charset.StandardCharsets.UTF_8));
+            String[] names = {"Lexer", "Lexer mapped", "TableLexer", "TableLexer mapped"};
+            Lexer[] lexers = {
+                new Lexer(java.nio.file.Files.newBufferedReader(test), null),
+                new Lexer(test, null),
+                new TableLexer(java.nio.file.Files.newBufferedReader(test), null),
+                new TableLexer(test, null),
+            };
+            for (int e = 0; e < lexers.length; e++)
+            {
+                java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+                TextSink sink = new TextSink(out);
+                new Compiler(lexers[e]).Compile(sink);
+                sink.flush();
+                String got = lines(new String(out.toByteArray(), java.nio.charset.StandardCharsets.UTF_8));
+                if (!got.equals(expected))
+                {
+                    if (mismatches++ < 3)
+                        System.out.println(test + " with " + names[e] + "\n--expected\n" + expected + "--got\n" + got);
+                }
+            }
+        }
+        report("golden", mismatches, files + " files");
+    }
+
+    // the Lexer in blocks of a few characters and mapped, and the TableLexer the same three ways.
+    static void engines() throws Exception
+    {
+        differential("engines",
+            new String[] {"Lexer", "Lexer 1-char blocks", "Lexer 3-char blocks", "Lexer mapped", "TableLexer", "TableLexer 2-char blocks", "TableLexer mapped"},
+            (text, file) -> tokens(new Lexer(new java.io.StringReader(text), null)),
+            (text, file) -> tokens(new Lexer(new java.io.StringReader(text), null, 1)),
+            (text, file) -> tokens(new Lexer(new java.io.StringReader(text), null, 3)),
+            (text, file) -> tokens(new Lexer(file, null)),
+            (text, file) -> tokens(new TableLexer(new java.io.StringReader(text), null)),
+            (text, file) -> tokens(new TableLexer(new java.io.StringReader(text), null, 2)),
+            (text, file) -> tokens(new TableLexer(file, null)));
+    }
+
+    // the engines again with recovery from errors, up to a limit of 1 to 8 errors a text. and the Lexer with recovery
+    // against itself without: the same up to the first error, which is the first it records, every error after that
+    // further on in the text than the one before, and no more errors than the text has '_', '.', '!' and ':', one of
+    // which every error reads past.
+    static void recovery() throws Exception
+    {
+        differential("recovery",
+            new String[] {"Lexer", "Lexer 1-char blocks", "Lexer 3-char blocks", "Lexer mapped", "TableLexer", "TableLexer 2-char blocks", "TableLexer mapped"},
+            (text, file) -> tokens(recovering(new Lexer(new java.io.StringReader(text), null), text)),
+            (text, file) -> tokens(recovering(new Lexer(new java.io.StringReader(text), null, 1), text)),
+            (text, file) -> tokens(recovering(new Lexer(new java.io.StringReader(text), null, 3), text)),
+            (text, file) -> tokens(recovering(new Lexer(file, null), text)),
+            (text, file) -> tokens(recovering(new TableLexer(new java.io.StringReader(text), null), text)),
+            (text, file) -> tokens(recovering(new TableLexer(new java.io.StringReader(text), null, 2), text)),
+            (text, file) -> tokens(recovering(new TableLexer(file, null), text)));
+
+        java.util.Random random = new java.util.Random(seed);
+        int mismatches = 0, errors = 0;
+        for (int i = 0; i < iterations; i++)
+        {
+            String text = text(random, random.nextInt(80));
+            String plain = tokens(new Lexer(new java.io.StringReader(text), null));
+            Lexer lexer = recovering(new Lexer(new java.io.StringReader(text), null), text);
+            String recovered = tokens(lexer);
+            LexicalErrors found = lexer.errors;
+            String wrong = null;
+            int end = plain.lastIndexOf("end ");
+            if (plain.startsWith("end -1 ", end))
+            {
+                errors++;
+                String at = plain.substring(end + 7).trim();
+                if (!recovered.startsWith(plain.substring(0, end)))
+                    wrong = "the tokens in front of the first error differ";
+                else if (found.size() == 0 || !at.equals(found.line(0) + ":" + found.column(0)))
+                    wrong = "the first error recorded is not at " + at;
+            }
+            else if (!recovered.equals(plain))
+                wrong = "a text without errors lexes differently";
+            int marks = 0;
+            for (int c = 0; c < text.length(); c++)
+            {
+                if ("_.!:".indexOf(text.charAt(c)) >= 0)
+                    marks++;
+            }
+            if (wrong == null && found.size() > marks)
+                wrong = found.size() + " errors in a text with " + marks + " of '_', '.', '!' and ':'";
+            for (int e = 1; wrong == null && e < found.size(); e++)
+            {
+                if (found.line(e) < found.line(e - 1) || found.line(e) == found.line(e - 1) && found.column(e) <= found.column(e - 1))
+                    wrong = "error " + e + " is not behind the one before";
+            }
+            if (wrong != null && mismatches++ < 3)
+                System.out.println(wrong + ", on \"" + escape(text) + "\"\n--without recovery\n" + plain + "--with\n" + recovered);
+        }
+        report("recovered", mismatches, iterations + " texts, " + errors + " with errors");
+    }
+
+    // a lexer that goes on behind errors, the limit taken from the text so every engine gets the same.
+    static Lexer recovering(Lexer lexer, String text)
+    {
+        lexer.errors = new LexicalErrors(1 + text.length() % 8);
+        return lexer;
+    }
+
+    // ParallelLexer in chunks of a few bytes, so that a text is cut at most of its newlines.
+    static void parallel() throws Exception
+    {
+        differential("parallel",
+            new String[] {"Lexer", "ParallelLexer 1-byte chunks", "ParallelLexer 7-byte chunks", "ParallelLexer 7-byte chunks, TableLexer"},
+            (text, file) -> tokens(new Lexer(new java.io.StringReader(text), null)),
+            (text, file) -> tokens(parallel(file, 1, false)),
+            (text, file) -> tokens(parallel(file, 7, false)),
+            (text, file) -> tokens(parallel(file, 7, true)));
+    }
+
+    static TokenBuffer parallel(java.nio.file.Path file, int chunkSize, boolean table) throws Exception
+    {
+        ParallelLexer lexer = new ParallelLexer(file);
+        lexer.chunkSize = chunkSize;
+        lexer.table = table;
+        lexer.lex();
+        return lexer.tokens();
+    }
+
+    // IncrementalLexer after each of a run of random edits to a text, against the Lexer on the edited text.
+    static void incremental() throws Exception
+    {
+        java.util.Random random = new java.util.Random(seed);
+        int mismatches = 0, edits = 0;
+        for (int i = 0; i < iterations; i++)
+        {
+            // one text in ten is hundreds of lines without errors, whose tokens fill many blocks
+            String text = i % 10 == 0 ? corpus(random, 50 + random.nextInt(300)) : text(random, random.nextInt(200));
+            IncrementalLexer lexer = new IncrementalLexer(text);
+            for (int e = 0; e < 10; e++)
+            {
+                int offset = random.nextInt(text.length() + 1);
+                int removed = Math.min(random.nextInt(20), text.length() - offset);
+                String inserted = text(random, random.nextInt(4));
+                String edited = text.substring(0, offset) + inserted + text.substring(offset + removed);
+                lexer.edit(edited, offset, removed, inserted.length());
+                edits++;
+                String expected = tokens(new Lexer(new java.io.StringReader(edited), null));
+                String got = tokens(lexer);
+                if (!got.equals(expected))
+                {
+                    if (mismatches++ < 3)
+                        System.out.println("IncrementalLexer on \"" + escape(text) + "\" replacing " + removed + " at " + offset + " with \""
+                                           + escape(inserted) + "\"\n--Lexer\n" + expected + "--IncrementalLexer\n" + got);
+                    break;
+                }
+                text = edited;
+            }
+        }
+        report("incremental", mismatches, edits + " edits");
+    }
+
+    // intValue(), doubleValue() and scaledValue() of every NUM, read through a Reader in blocks of every size, mapped,
+    // and from the text itself, and the dval and ival yylex() hands the parser, against the same of the lexeme as a
+    // String. the numbers lie around the limits of int, of the 53 bits of a double and of long, and have fractions
+    // that round half way.
+    static void numbers() throws Exception
+    {
+        java.util.Random random = new java.util.Random(seed);
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("check", ".minc");
+        int mismatches = 0, numbers = 0;
+        try
+        {
+            for (int i = 0; i < iterations; i++)
+            {
+                StringBuilder b = new StringBuilder();
+                for (int n = random.nextInt(20); n > 0; n--)
+                    b.append(number(random)).append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+                String text = b.toString();
+                java.nio.file.Files.write(file, text.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                String[] names = {"Lexer", "Lexer 1-char blocks", "Lexer 3-char blocks", "Lexer mapped", "TableLexer mapped"};
+                Lexer[] lexers = {
+                    new Lexer(new java.io.StringReader(text), null),
+                    new Lexer(new java.io.StringReader(text), null, 1),
+                    new Lexer(new java.io.StringReader(text), null, 3),
+                    new Lexer(file, null),
+                    new TableLexer(file, null),
+                };
+                String wrong = null;
+                for (int e = 0; wrong == null && e < lexers.length; e++)
+                {
+                    Lexer lexer = lexers[e];
+                    new Parser(lexer, null);
+                    int kind = 0;
+                    while (wrong == null && (kind = lexer.yylex()) > 0)
+                    {
+                        if (kind != Parser.NUM)
+                            continue;
+                        String lexeme = lexer.lexeme().toString();
+                        String expected = values(lexeme);
+                        String got = values((Lexeme)lexer.lexeme());
+                        if (!got.equals(expected))
+                            wrong = names[e] + " decodes " + lexeme + " as\n" + got + "instead of\n" + expected;
+                        else if (e == 0 && !(got = values(new Lexeme().set(text, lexer.tokenStart, lexer.tokenLength))).equals(expected))
+                            wrong = "the text decodes " + lexeme + " as\n" + got + "instead of\n" + expected;
+                        else if (!(got = yylval(lexer.yyparser.yylval)).equals(expected = yylval(lexeme)))
+                            wrong = names[e] + " hands the parser " + got + " for " + lexeme + " instead of " + expected;
+                        if (e == 0)
+                            numbers++;
+                    }
+                    if (wrong == null && kind < 0)
+                        wrong = names[e] + " stops with an error at " + lexer.lineno + ":" + lexer.column;
+                }
+                if (wrong != null && mismatches++ < 3)
+                    System.out.println(wrong + ", on \"" + escape(text) + "\"");
+            }
+        }
+        finally
+        {
+            java.nio.file.Files.delete(file);
+        }
+        report("numbers", mismatches, iterations + " texts, " + numbers + " numbers");
+    }
+
+    static final String[] SEPARATORS = {" ", "\n", "\r\n", ";", "+", "(", "\t", "// 1.5\n"};
+    static final String[] FRACTIONS  = {"5", "05", "25", "50", "500", "4999", "5001", "0005", "9995", "125", "0"};
+
+    static String number(java.util.Random random)
+    {
+        StringBuilder b = new StringBuilder();
+        switch (random.nextInt(5))
+        {
+            case 0  : b.append((1L << 31) - 3 + random.nextInt(6)); break;
+            case 1  : b.append((1L << 53) - 3 + random.nextInt(6)); break;
+            case 2  : b.append(Long.MAX_VALUE / (long)Math.pow(10, random.nextInt(7)) - 2 + random.nextInt(5)); break;
+            default : b.append(digits(random, 1 + random.nextInt(24)));
+        }
+        switch (random.nextInt(4))
+        {
+            case 0  : break;
+            case 1  : b.append('.').append(FRACTIONS[random.nextInt(FRACTIONS.length)]); break;
+            default : b.append('.').append(digits(random, 1 + random.nextInt(24)));
+        }
+        return b.toString();
+    }
+
+    // random digits, now and then in runs of zeros or nines.
+    static String digits(java.util.Random random, int length)
+    {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < length; i++)
+        {
+            int r = random.nextInt(14);
+            b.append(r < 10 ? (char)('0' + r) : r < 12 ? '0' : '9');
+        }
+        return b.toString();
+    }
+
+    interface Value
+    {
+        Object get();
+    }
+
+    // the value, or that there is none, the name of the exception does not matter.
+    static String value(String name, Value value)
+    {
+        try
+        {
+            return name + " " + value.get() + "\n";
+        }
+        catch (ArithmeticException | NumberFormatException e)
+        {
+            return name + " none\n";
+        }
+    }
+
+    static final int[] SCALES = {0, 1, 2, 3, 6, 12};
+
+    static String values(Lexeme number)
+    {
+        StringBuilder b = new StringBuilder();
+        b.append(value("int", number::intValue));
+        b.append(value("double", () -> Long.toHexString(Double.doubleToLongBits(number.doubleValue()))));
+        for (int scale : SCALES)
+            b.append(value("scale " + scale, () -> number.scaledValue(scale)));
+        return b.toString();
+    }
+
+    static String values(String number)
+    {
+        StringBuilder b = new StringBuilder();
+        b.append(value("int", () -> Integer.parseInt(number)));
+        b.append(value("double", () -> Long.toHexString(Double.doubleToLongBits(Double.parseDouble(number)))));
+        for (int scale : SCALES)
+            b.append(value("scale " + scale, () -> new java.math.BigDecimal(number).setScale(scale, java.math.RoundingMode.HALF_EVEN).unscaledValue().longValueExact()));
+        return b.toString();
+    }
+
+    // the dval and ival of a NUM: its value, and as an int if it is an integer that fits, -1 otherwise.
+    static String yylval(ParserVal value)
+    {
+        return "dval " + Long.toHexString(Double.doubleToLongBits(value.dval)) + " ival " + value.ival;
+    }
+
+    static String yylval(String number)
+    {
+        int ival;
+        try
+        {
+            ival = Integer.parseInt(number);
+        }
+        catch (NumberFormatException e)
+        {
+            ival = -1;
+        }
+        return "dval " + Long.toHexString(Double.doubleToLongBits(Double.parseDouble(number))) + " ival " + ival;
+    }
+
+    // OffsetLexer against the TableLexer it leaves the positions out of, with recovery from errors: every token at the
+    // line and column worked out from its offset, which locate() must set the same. read through a Reader, in blocks
+    // of a few characters, mapped, and after reset() from another input. then the tokens of TokenBuffer.lexOffsets()
+    // against lex(), and where LalrParser stops with a syntax error.
+    static void offsets() throws Exception
+    {
+        differential("offsets",
+            new String[] {"TableLexer", "OffsetLexer", "OffsetLexer 2-char blocks", "OffsetLexer mapped", "OffsetLexer reset"},
+            (text, file) -> tokens(recovering(new TableLexer(new java.io.StringReader(text), null), text)),
+            (text, file) -> located((OffsetLexer)recovering(new OffsetLexer(new java.io.StringReader(text), null), text)),
+            (text, file) -> located((OffsetLexer)recovering(new OffsetLexer(new java.io.StringReader(text), null, 2), text)),
+            (text, file) -> located((OffsetLexer)recovering(new OffsetLexer(file, null), text)),
+            (text, file) -> {
+                OffsetLexer lexer = new OffsetLexer(new java.io.StringReader("a\nb\r\n\u0000c // d\n"), null);
+                while (lexer.next() > 0)
+                    ;
+                lexer.reset(new java.io.StringReader(text));
+                return located((OffsetLexer)recovering(lexer, text));
+            });
+        differential("offsets buffer",
+            new String[] {"lex mapped", "lexOffsets mapped", "lex text", "lexOffsets text"},
+            (text, file) -> tokens(TokenBuffer.lex(file, true)),
+            (text, file) -> tokens(TokenBuffer.lexOffsets(file)),
+            (text, file) -> tokens(TokenBuffer.lex(text, true)),
+            (text, file) -> tokens(TokenBuffer.lexOffsets(text)));
+        differential("offsets parse",
+            new String[] {"LalrParser", "LalrParser, TableLexer", "LalrParser, OffsetLexer"},
+            (text, file) -> parsed(new LalrParser(new Lexer(file, null), 16)),
+            (text, file) -> parsed(new LalrParser(new TableLexer(file, null), 16)),
+            (text, file) -> parsed(new LalrParser(new OffsetLexer(file, null), 16)));
+    }
+
+    // the tokens of an OffsetLexer the way tokens() gives them, with the position of each worked out from its offset.
+    static String located(OffsetLexer lexer) throws Exception
+    {
+        StringBuilder b = new StringBuilder();
+        int kind;
+        while ((kind = lexer.next()) > 0)
+        {
+            int line = lexer.line(lexer.tokenStart);
+            int column = lexer.column(lexer.tokenStart);
+            b.append(kind).append(' ').append(lexer.lexeme()).append(' ').append(line).append(':').append(column).append('\n');
+            lexer.locate();
+            if (lexer.lineno != line || lexer.column != column)
+                b.append("locate() sets ").append(lexer.lineno).append(':').append(lexer.column).append('\n');
+        }
+        b.append("end ").append(kind).append(' ').append(lexer.lineno).append(':').append(lexer.column).append('\n');
+        if (lexer.errors != null)
+            b.append(lexer.errors);
+        return b.toString();
+    }
+
+    // how parsing ended, and the tree if it did not fail.
+    static String parsed(LalrParser parser) throws Exception
+    {
+        int status = parser.parse();
+        String end = status + " " + parser.lineno + ":" + parser.column + " " + parser.syntaxError + " " + parser.unexpected + "\n";
+        return status == 0 ? end + parser.ast : end;
+    }
+
+    // the output of Driver for a file smaller than a block, which it reads whole instead of mapping, against the same
+    // file mapped and read through a FileReader. the options are taken from the text so every run of it gets the same:
+    // the TableLexer or not, recovery from errors, the syntax tree with or without OffsetLexer. every hundredth text
+    // comes after a comment that makes the file about as long as the size Driver starts to map files at.
+    static void driver() throws Exception
+    {
+        java.util.Random random = new java.util.Random(seed);
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("check", ".minc");
+        String[] names = {"Driver mapped", "Driver", "Driver --reader"};
+        int mismatches = 0, padded = 0;
+        try
+        {
+            for (int i = 0; i < iterations; i++)
+            {
+                String text = text(random, random.nextInt(80));
+                if (i % 100 == 0)
+                {
+                    int size = (int)Driver.MAP_SIZE - 2 + random.nextInt(4);
+                    int comment = size - text.getBytes(java.nio.charset.StandardCharsets.UTF_8).length - 3;
+                    text = "//" + "x".repeat(comment) + "\n" + text;
+                    padded++;
+                }
+                java.nio.file.Files.write(file, text.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                String expected = null;
+                for (int e = 0; e < names.length; e++)
+                {
+                    Driver driver = new Driver();
+                    driver.mapSize = e == 0 ? 0 : Driver.MAP_SIZE;
+                    driver.mapped  = e < 2;
+                    driver.table   = text.length() % 2 == 1;
+                    driver.ast     = text.length() % 5 == 0;
+                    driver.offsets = driver.ast && text.length() % 3 == 0;
+                    driver.maxErrors = driver.ast ? 0 : text.length() / 2 % 4;
+                    String got = new String(driver.compile(file).output, java.nio.charset.StandardCharsets.UTF_8);
+                    if (e == 0)
+                        expected = got;
+                    else if (!got.equals(expected))
+                    {
+                        if (mismatches++ < 3)
+                            System.out.println(names[e] + " on \"" + escape(text.length() > 200 ? "..." + text.substring(text.length() - 200) : text) + "\"\n--"
+                                               + names[0] + "\n" + expected + "--" + names[e] + "\n" + got);
+                        break;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            java.nio.file.Files.delete(file);
+        }
+        report("driver", mismatches, iterations + " texts, " + padded + " padded to the mapping size");
+    }
+
+    // run every engine on random texts and compare each with the first.
+    static void differential(String section, String[] names, Engine... engines) throws Exception
+    {
+        java.util.Random random = new java.util.Random(seed);
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("check", ".minc");
+        int mismatches = 0;
+        try
+        {
+            for (int i = 0; i < iterations; i++)
+            {
+                String text = text(random, random.nextInt(80));
+                java.nio.file.Files.write(file, text.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                String expected = engines[0].run(text, file);
+                for (int e = 1; e < engines.length; e++)
+                {
+                    String got = engines[e].run(text, file);
+                    if (!got.equals(expected))
+                    {
+                        if (mismatches++ < 3)
+                            System.out.println(names[e] + " on \"" + escape(text) + "\"\n--" + names[0] + "\n" + expected + "--" + names[e] + "\n" + got);
+                        break;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            java.nio.file.Files.delete(file);
+        }
+        report(section, mismatches, iterations + " texts");
+    }
+
+    static String text(java.util.Random random, int pieces)
+    {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < pieces; i++)
+            b.append(PIECES[random.nextInt(PIECES.length)]);
+        return b.toString();
+    }
+
+    // lines of every flavour of Corpus.
+    static String corpus(java.util.Random random, int lines)
+    {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < lines; i++)
+            Corpus.line(b.append(i > 0 ? "\n" : ""), Corpus.FLAVOURS[random.nextInt(Corpus.FLAVOURS.length)], random);
+        return b.toString();
+    }
+
+    // every token of a lexer, the end it came to and the errors it recorded.
+    static String tokens(Lexer lexer) throws Exception
+    {
+        StringBuilder b = new StringBuilder();
+        int kind;
+        while ((kind = lexer.next()) > 0)
+            b.append(kind).append(' ').append(lexer.lexeme()).append(' ').append(lexer.lineno).append(':').append(lexer.column).append('\n');
+        b.append("end ").append(kind).append(' ').append(lexer.lineno).append(':').append(lexer.column).append('\n');
+        if (lexer.errors != null)
+            b.append(lexer.errors);
+        return b.toString();
+    }
+
+    // the tokens of a buffer, the same way.
+    static String tokens(TokenBuffer tokens)
+    {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < tokens.size(); i++)
+            b.append(tokens.kind(i)).append(' ').append(tokens.lexeme(i)).append(' ').append(tokens.line(i)).append(':').append(tokens.column(i)).append('\n');
+        b.append("end ").append(tokens.status).append(' ').append(tokens.lineno).append(':').append(tokens.column).append('\n');
+        return b.toString();
+    }
+
+    static String tokens(IncrementalLexer lexer)
+    {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < lexer.size(); i++)
+            b.append(lexer.kind(i)).append(' ').append(lexer.lexeme(i)).append(' ').append(lexer.line(i)).append(':').append(lexer.column(i)).append('\n');
+        b.append("end ").append(lexer.status).append(' ').append(lexer.lineno).append(':').append(lexer.column).append('\n');
+        return b.toString();
+    }
+
+    // the lines of an output without '\r' and blank lines, which tell nothing about the tokens.
+    static String lines(String output)
+    {
+        StringBuilder b = new StringBuilder();
+        for (String line : output.split("\r?\n"))
+        {
+            if (!line.isEmpty())
+                b.append(line).append('\n');
+        }
+        return b.toString();
+    }
+
+    static String escape(String text)
+    {
+        return text.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t").replace("\u0000", "\\0");
+    }
+
+    static void report(String section, int mismatches, String of)
+    {
+        System.out.printf("%-15s %6d mismatches in %s%n", section, mismatches, of);
+        if (mismatches > 0)
+            failed++;
+    }
+}
@@ -0,0 +1,88 @@
+// synthetic MinC sources for the benchmarks, written once into bench/corpus and reused.
+// every flavour is free of lexical errors, so the whole file is lexed.
+public class Corpus
+{
+    public static final String[] FLAVOURS = {"identifier", "number", "comment", "operator", "whitespace"};
+
+    static final String[] WORDS = {"a", "b", "count", "total_12", "x1", "index", "value", "NaN", "result_sum", "tmp"};
+
+    public static java.io.File file(String flavour, long size) throws Exception
+    {
+        java.io.File dir = new java.io.File("bench/corpus");
+        dir.mkdirs();
+        java.io.File f = new java.io.File(dir, flavour + "-" + size + ".minc");
+        if (f.length() != size)
+            write(f, flavour, size);
+        return f;
+    }
+
+    static void write(java.io.File f, String flavour, long size) throws Exception
+    {
+        java.util.Random random = new java.util.Random(470);
+        StringBuilder line = new StringBuilder();
+        try (java.io.Writer w = new java.io.BufferedWriter(new java.io.FileWriter(f), 1 << 16))
+        {
+            long written = 0;
+            while (written < size)
+            {
+                line.setLength(0);
+                line(line, flavour, random);
+                line.append('\n');
+                if (written + line.length() > size)         // pad the last line with spaces to the exact size
+                {
+                    line.setLength(0);
+                    while (written + line.length() + 1 < size)
+                        line.append(' ');
+                    line.append('\n');
+                }
+                w.append(line);
+                written += line.length();
+            }
+        }
+    }
+
+    static void line(StringBuilder b, String flavour, java.util.Random random)
+    {
+        switch (flavour)
+        {
+            case "identifier" :
+                for (int i = 0; i < 8; i++)
+                    b.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                b.append(';');
+                break;
+            case "number" :
+                b.append(WORDS[random.nextInt(WORDS.length)]).append(" <- ");
+                for (int i = 0; i < 6; i++)
+                {
+                    b.append(random.nextInt(100000));
+                    if (random.nextBoolean())
+                        b.append('.').append(random.nextInt(1000));
+                    b.append(i < 5 ? " + " : ";");
+                }
+                break;
+            case "comment" :
+                if (random.nextInt(4) == 0)
+                    b.append("    print ").append(WORDS[random.nextInt(WORDS.length)]).append(';');
+                else
+                    b.append("    // the number cannot be \"3.\" and an ID cannot start with '_' ").append(random.nextInt(1000));
+                break;
+            case "operator" :
+                for (int i = 0; i < 6; i++)
+                    b.append("a<=b->c<-(d)>=e!=f*g/h+i-j;");
+                break;
+            case "whitespace" :     // deep indentation, and tokens lined up in columns
+                b.append("\t\t\t\t                ");
+                for (int i = 0; i < 4; i++)
+                {
+                    String word = WORDS[random.nextInt(WORDS.length)];
+                    b.append(word);
+                    for (int pad = word.length(); pad < 16; pad++)
+                        b.append(' ');
+                }
+                b.append(';');
+                break;
+            default :
+                throw new IllegalArgumentException("unknown flavour " + flavour);
+        }
+    }
+}
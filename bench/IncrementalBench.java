@@ -0,0 +1,67 @@
+// latency of IncrementalLexer.edit() against lexing the whole text again, on a text of many lines.
+// typing edits one character near the last edit, jumping edits one character anywhere in the text.
+//
+//   ./bench.sh -c IncrementalBench [--lines 100000] [--edits 20000]
+public class IncrementalBench
+{
+    public static void main(String[] args) throws Exception
+    {
+        int lines = 100000;
+        int edits = 20000;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--lines" : lines = Integer.parseInt(args[++i]); break;
+                case "--edits" : edits = Integer.parseInt(args[++i]); break;
+                default :
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        java.util.Random random = new java.util.Random(470);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++)
+        {
+            Corpus.line(text, i % 2 == 0 ? "identifier" : "comment", random);
+            text.append('\n');
+        }
+        System.out.printf("%d lines, %d chars%n", lines, text.length());
+
+        for (int round = 0; round < 3; round++)
+        {
+            System.out.println("round " + round);
+            long t0 = System.nanoTime();
+            IncrementalLexer lexer = new IncrementalLexer(text);
+            long full = System.nanoTime() - t0;
+            System.out.printf("  full lex          %10.1f us, %d tokens%n", full / 1e3, lexer.size());
+            edit("typing ", lexer, text, random, edits, false);
+            edit("jumping", lexer, text, random, edits, true);
+        }
+    }
+
+    // insert or delete one letter per edit, timing only edit().
+    static void edit(String name, IncrementalLexer lexer, StringBuilder text, java.util.Random random, int edits, boolean jump) throws Exception
+    {
+        long time = 0, relexed = 0;
+        int cursor = text.length() / 2;
+        for (int i = 0; i < edits; i++)
+        {
+            cursor = jump ? random.nextInt(text.length()) : Math.max(0, Math.min(text.length() - 1, cursor + random.nextInt(81) - 40));
+            // only letters, and never between the slashes of a comment, so the text stays free of errors
+            while (cursor > 0 && (text.charAt(cursor) == '/' || text.charAt(cursor - 1) == '/'))
+                cursor--;
+            boolean insert = random.nextBoolean() || cursor == 0 || !Character.isLetter(text.charAt(cursor)) || !Character.isLetter(text.charAt(cursor - 1));
+            if (insert)
+                text.insert(cursor, (char)('a' + random.nextInt(26)));
+            else
+                text.deleteCharAt(cursor);
+            long t0 = System.nanoTime();
+            lexer.edit(text, cursor, insert ? 0 : 1, insert ? 1 : 0);
+            time += System.nanoTime() - t0;
+            relexed += lexer.relexed;
+        }
+        System.out.printf("  %s edit      %10.1f us, %.1f tokens lexed an edit%n", name, time / 1e3 / edits, (double)relexed / edits);
+    }
+}
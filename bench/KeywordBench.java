@@ -0,0 +1,95 @@
+// keyword recognition microbenchmark: the String switch state 100 used to run on every identifier,
+// against the keyword trie walked while the identifier is read.
+//
+//   ./bench.sh -c KeywordBench
+public class KeywordBench
+{
+    static final String[] IDENTIFIERS = {"a", "b12", "count", "in", "prin", "whilex", "variable", "funcs", "el", "voids", "x_1", "intx", "NaN"};
+
+    public static void main(String[] args) throws Exception
+    {
+        java.util.Random random = new java.util.Random(470);
+        String keywordHeavy    = words(random, Lexer.keywords, 200000);
+        String identifierHeavy = words(random, IDENTIFIERS, 200000);
+
+        for (int round = 0; round < 5; round++)
+        {
+            System.out.println("round " + round);
+            run("keyword-heavy   ", keywordHeavy);
+            run("identifier-heavy", identifierHeavy);
+        }
+    }
+
+    static String words(java.util.Random random, String[] from, int count)
+    {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < count; i++)
+        {
+            b.append(from[random.nextInt(from.length)]);
+            b.append(i % 8 == 7 ? '\n' : ' ');
+        }
+        return b.toString();
+    }
+
+    static void run(String name, String input) throws Exception
+    {
+        char[] text = input.toCharArray();
+        int[] starts  = new int[text.length];
+        int[] lengths = new int[text.length];
+        int words = 0;
+        for (int i = 0; i < text.length; )
+        {
+            int j = i;
+            while (j < text.length && text[j] != ' ' && text[j] != '\n')
+                j++;
+            starts[words] = i;
+            lengths[words++] = j - i;
+            i = j + 1;
+        }
+
+        long t0 = System.nanoTime();
+        long sum = 0;
+        for (int w = 0; w < words; w++)
+            sum += viaSwitch(new String(text, starts[w], lengths[w]));
+        long t1 = System.nanoTime();
+        for (int w = 0; w < words; w++)
+            sum -= viaTrie(text, starts[w], lengths[w]);
+        long t2 = System.nanoTime();
+        if (sum != 0)
+            throw new IllegalStateException("trie and switch disagree");
+
+        Lexer lexer = new Lexer(new java.io.StringReader(input), null);
+        int tokens = 0;
+        while (lexer.next() > 0)
+            tokens++;
+        long t3 = System.nanoTime();
+
+        System.out.printf("  %s  switch %5.1f ns/word   trie %5.1f ns/word   next() %6.1f MB/s (%d tokens)%n",
+                          name, (t1 - t0) / (double)words, (t2 - t1) / (double)words, input.length() / 1e3 / ((t3 - t2) / 1e6), tokens);
+    }
+
+    // what state 100 used to do.
+    static int viaSwitch(String lexeme)
+    {
+        switch (lexeme)
+        {
+            case "int"   : return Parser.INT;
+            case "print" : return Parser.PRINT;
+            case "var"   : return Parser.VAR;
+            case "func"  : return Parser.FUNC;
+            case "if"    : return Parser.IF;
+            case "else"  : return Parser.ELSE;
+            case "while" : return Parser.WHILE;
+            case "void"  : return Parser.VOID;
+            default      : return Parser.ID;
+        }
+    }
+
+    static int viaTrie(char[] text, int start, int length)
+    {
+        int node = 1;
+        for (int i = 0; i < length; i++)
+            node = Lexer.keywordStep(node, text[start + i]);
+        return Lexer.keywordToken[node] != 0 ? Lexer.keywordToken[node] : Parser.ID;
+    }
+}
@@ -0,0 +1,98 @@
+// throughput and allocation of the lexer engines and the parser, over test1.minc - test8.minc and synthetic files.
+//
+//   ./bench.sh [--engines lexer,table,offsets,yylex,parser,text] [--flavours identifier,number,comment,operator]
+//              [--sizes 1k,64k,1m,16m] [--mmap] [--warmup 5] [--iterations 10]
+//
+// sizes go up to 1g, the files are generated into bench/corpus on first use.
+public class LexerBench
+{
+    public static void main(String[] args) throws Exception
+    {
+        String[] engines  = {"lexer", "table", "yylex", "parser"};
+        String[] flavours = Corpus.FLAVOURS;
+        String[] sizes    = {"1k", "64k", "1m", "16m"};
+        boolean  mmap     = false;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--engines"    : engines  = args[++i].split(","); break;
+                case "--flavours"   : flavours = args[++i].split(","); break;
+                case "--sizes"      : sizes    = args[++i].split(","); break;
+                case "--mmap"       : mmap     = true; break;
+                case "--warmup"     : Bench.warmups    = Integer.parseInt(args[++i]); break;
+                case "--iterations" : Bench.iterations = Integer.parseInt(args[++i]); break;
+                default             : throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        java.io.File[] tests = new java.io.File[8];
+        long testBytes = 0;
+        for (int i = 0; i < tests.length; i++)
+        {
+            tests[i] = new java.io.File("test" + (i + 1) + ".minc");
+            testBytes += tests[i].length();
+        }
+        for (String engine : engines)
+            Bench.measure(engine + " test1-8.minc", testBytes, () -> { long n = 0; for (java.io.File f : tests) n += run(engine, f, false); return n; });
+
+        for (String flavour : flavours)
+        {
+            for (String size : sizes)
+            {
+                java.io.File f = Corpus.file(flavour, Bench.parseSize(size));
+                for (String engine : engines)
+                {
+                    boolean mapped = mmap;
+                    Bench.measure(engine + " " + flavour + " " + size + (mapped ? " mmap" : ""), f.length(), () -> run(engine, f, mapped));
+                }
+            }
+        }
+    }
+
+    // lex or parse one file, returns the number of tokens.
+    static long run(String engine, java.io.File f, boolean mapped) throws Exception
+    {
+        Lexer lexer;
+        switch (engine)
+        {
+            case "table" :
+                lexer = mapped ? new TableLexer(f.toPath(), null) : new TableLexer(new java.io.FileReader(f), null);
+                break;
+            case "offsets" :
+                lexer = mapped ? new OffsetLexer(f.toPath(), null) : new OffsetLexer(new java.io.FileReader(f), null);
+                break;
+            default :
+                lexer = mapped ? new Lexer(f.toPath(), null) : new Lexer(new java.io.FileReader(f), null);
+                break;
+        }
+        long tokens = 0;
+        switch (engine)
+        {
+            case "yylex" :
+                new Parser(lexer, null);
+                while (lexer.yylex() > 0)
+                    tokens++;
+                return tokens;
+            case "parser" :
+                NullSink sink = new NullSink();
+                new Compiler(lexer).Compile(sink);
+                return sink.tokens;
+            case "text" :
+                NullSink count = new NullSink();
+                new Compiler(lexer).Compile(new TextSink(java.io.OutputStream.nullOutputStream())
+                {
+                    public void token(int kind, CharSequence lexeme, int line, int column) throws Exception
+                    {
+                        super.token(kind, lexeme, line, column);
+                        count.tokens++;
+                    }
+                });
+                return count.tokens;
+            default :
+                while (lexer.next() > 0)
+                    tokens++;
+                return tokens;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+// the values of the NUM tokens of number-dense input: copied out of the lexeme into a String and parsed by
+// Integer.parseInt() or Double.parseDouble() after lexing, against decoded straight from the input by Lexeme.
+// the rows count NUM tokens, and add their values up so none of the work can be dropped. they share next(),
+// so the rows run after the first one see a JIT profile polluted by the ones before, --only runs one row.
+//
+//   ./bench.sh -c NumberBench [--size 16m] [--table] [--reader] [--only lex|strings|decoded|fixed]
+public class NumberBench
+{
+    static double sum;
+
+    public static void main(String[] args) throws Exception
+    {
+        long size = 16 << 20;
+        boolean table = false;
+        boolean reader = false;
+        String only = null;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--size"       : size = Bench.parseSize(args[++i]); break;
+                case "--table"      : table = true; break;
+                case "--reader"     : reader = true; break;
+                case "--only"       : only = args[++i]; break;
+                case "--warmup"     : Bench.warmups    = Integer.parseInt(args[++i]); break;
+                case "--iterations" : Bench.iterations = Integer.parseInt(args[++i]); break;
+                default :
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        java.io.File f = Corpus.file("number", size);
+        boolean t = table, r = reader;
+        if (only == null || only.equals("lex"))
+            Bench.measure("lexing only", f.length(), () ->
+            {
+                Lexer lexer = lexer(f, t, r);
+                long n = 0;
+                int token;
+                while ((token = lexer.next()) > 0)
+                {
+                    if (token == Parser.NUM)
+                        n++;
+                }
+                return n;
+            });
+        if (only == null || only.equals("strings"))
+            Bench.measure("parseInt/parseDouble", f.length(), () ->
+            {
+                Lexer lexer = lexer(f, t, r);
+                long n = 0;
+                int token;
+                while ((token = lexer.next()) > 0)
+                {
+                    if (token == Parser.NUM)
+                    {
+                        String s = lexer.lexeme().toString();
+                        sum += s.indexOf('.') < 0 ? Integer.parseInt(s) : Double.parseDouble(s);
+                        n++;
+                    }
+                }
+                return n;
+            });
+        if (only == null || only.equals("decoded"))
+            Bench.measure("decoded by Lexeme", f.length(), () ->
+            {
+                Lexer lexer = lexer(f, t, r);
+                long n = 0;
+                int token;
+                while ((token = lexer.next()) > 0)
+                {
+                    if (token == Parser.NUM)
+                    {
+                        Lexeme lexeme = (Lexeme)lexer.lexeme();
+                        sum += lexeme.isInteger() ? lexeme.intValue() : lexeme.doubleValue();
+                        n++;
+                    }
+                }
+                return n;
+            });
+        if (only == null || only.equals("fixed"))
+            Bench.measure("fixed point, scale 3", f.length(), () ->
+            {
+                Lexer lexer = lexer(f, t, r);
+                long n = 0;
+                int token;
+                while ((token = lexer.next()) > 0)
+                {
+                    if (token == Parser.NUM)
+                    {
+                        sum += lexer.scaledValue(3);
+                        n++;
+                    }
+                }
+                return n;
+            });
+        System.out.println("sum " + sum);
+    }
+
+    static Lexer lexer(java.io.File f, boolean table, boolean reader) throws Exception
+    {
+        if (reader)
+            return table ? new TableLexer(new java.io.FileReader(f), null) : new Lexer(new java.io.FileReader(f), null);
+        return table ? new TableLexer(f.toPath(), null) : new Lexer(f.toPath(), null);
+    }
+}
@@ -0,0 +1,61 @@
+// scaling of ParallelLexer with the threads it lexes on, over large files: the Lexer filling one TokenBuffer from the
+// mapped file alone, against ParallelLexer on fork/join pools of each thread count. both keep every token of the
+// file. the chunks scale with the threads up to the processors of the machine, beyond that the rows only show what
+// splitting and joining costs. allocation is counted on the calling thread, for ParallelLexer that leaves out the
+// chunks the pool lexes and counts the TokenBuffer they are joined into.
+// the tokens of a file of some hundreds of MB take over a GB, give the JVM the heap for them.
+//
+//   JAVA_OPTS=-Xmx4g ./bench.sh -c ParallelBench [--flavours identifier,comment] [--size 256m] [--threads 1,2,4,8]
+//                                                [--chunk 1m] [--table]
+public class ParallelBench
+{
+    public static void main(String[] args) throws Exception
+    {
+        String[] flavours = {"identifier", "comment"};
+        long     size     = 256 << 20;
+        String[] threads  = {"1", "2", "4", "8"};
+        int      chunk    = ParallelLexer.DEFAULT_CHUNK_SIZE;
+        boolean  table    = false;
+        Bench.warmups    = 2;
+        Bench.iterations = 5;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--flavours"   : flavours = args[++i].split(","); break;
+                case "--size"       : size = Bench.parseSize(args[++i]); break;
+                case "--threads"    : threads = args[++i].split(","); break;
+                case "--chunk"      : chunk = (int)Bench.parseSize(args[++i]); break;
+                case "--table"      : table = true; break;
+                case "--warmup"     : Bench.warmups    = Integer.parseInt(args[++i]); break;
+                case "--iterations" : Bench.iterations = Integer.parseInt(args[++i]); break;
+                default :
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+
+        boolean t = table;
+        int c = chunk;
+        for (String flavour : flavours)
+        {
+            java.nio.file.Path path = Corpus.file(flavour, size).toPath();
+            long bytes = java.nio.file.Files.size(path);
+            Bench.measure("Lexer " + flavour, bytes, () -> TokenBuffer.lex(path, t).size());
+            for (String n : threads)
+            {
+                java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(Integer.parseInt(n));
+                Bench.measure("ParallelLexer " + flavour + ", " + n + " threads", bytes, () -> {
+                    ParallelLexer lexer = new ParallelLexer(path);
+                    lexer.pool = pool;
+                    lexer.chunkSize = c;
+                    lexer.table = t;
+                    lexer.lex();
+                    return lexer.size();
+                });
+                pool.shutdown();
+            }
+        }
+    }
+}
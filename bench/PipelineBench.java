@@ -0,0 +1,113 @@
+// lexing and parsing in lockstep on one thread, against a PipelinedLexer running ahead on a thread of its own,
+// with each wait strategy of TokenRing. Parser with a NullSink does next to nothing with a token, so there is
+// only the lexer to pipeline, LalrParser builds its Ast while the lexer reads on. first token is the time from
+// opening a file to the parser holding its first token, where a pipeline starts its thread. the rows of
+// LalrParser count nodes.
+// overlapping needs a second core, on one core the threads only take turns.
+//
+//   ./bench.sh -c PipelineBench [--size 16m] [--table] [--capacity 16384] [--batch 256]
+//
+// NEGATIVE RESULT, ONE CORE ONLY. the only machine this has run on has a single processor, where a pipeline can only
+// lose. 16 MB program, median ms of ./bench.sh -c PipelineBench --size 16m:
+//
+//                      lockstep    spin   yield    park
+//   Parser, NullSink        134    2024     162     162
+//   LalrParser              220    2076     273     273
+//   first token           14 us    8 ms  607 us  589 us
+//
+// there are no numbers yet for two or more cores, where the lexer and the parser could overlap. until there are,
+// Driver only pipelines when the JVM sees more than one processor.
+public class PipelineBench
+{
+    public static void main(String[] args) throws Exception
+    {
+        long size = 16 << 20;
+        boolean table = false;
+        int capacity = PipelinedLexer.DEFAULT_CAPACITY;
+        int batch = PipelinedLexer.DEFAULT_BATCH;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--size"       : size = Bench.parseSize(args[++i]); break;
+                case "--table"      : table = true; break;
+                case "--capacity"   : capacity = Integer.parseInt(args[++i]); break;
+                case "--batch"      : batch = Integer.parseInt(args[++i]); break;
+                case "--warmup"     : Bench.warmups    = Integer.parseInt(args[++i]); break;
+                case "--iterations" : Bench.iterations = Integer.parseInt(args[++i]); break;
+                default :
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+
+        java.nio.file.Path path = AstBench.program(size).toPath();
+        long bytes = java.nio.file.Files.size(path);
+        boolean t = table;
+        int c = capacity, b = batch;
+        Bench.measure("Parser, lockstep", bytes, () -> compile(lexer(path, t)));
+        for (int w = 0; w < TokenRing.WAITS.length; w++)
+        {
+            int wait = w;
+            Bench.measure("Parser, pipelined " + TokenRing.WAITS[w], bytes, () -> compile(new PipelinedLexer(lexer(path, t), null, new TokenRing(c, b, wait))));
+        }
+        Bench.measure("LalrParser, lockstep", bytes, () -> parse(lexer(path, t), bytes));
+        for (int w = 0; w < TokenRing.WAITS.length; w++)
+        {
+            int wait = w;
+            Bench.measure("LalrParser, pipelined " + TokenRing.WAITS[w], bytes, () -> parse(new PipelinedLexer(lexer(path, t), null, new TokenRing(c, b, wait)), bytes));
+        }
+
+        firstToken("lockstep", () -> lexer(path, t));
+        for (int w = 0; w < TokenRing.WAITS.length; w++)
+        {
+            int wait = w;
+            firstToken("pipelined " + TokenRing.WAITS[w], () -> new PipelinedLexer(lexer(path, t), null, new TokenRing(c, b, wait)));
+        }
+    }
+
+    static Lexer lexer(java.nio.file.Path path, boolean table) throws Exception
+    {
+        return table ? new TableLexer(path, null) : new Lexer(path, null);
+    }
+
+    static long compile(Lexer lexer) throws Exception
+    {
+        NullSink sink = new NullSink();
+        if (new Compiler(lexer).Compile(sink) != 0)
+            throw new IllegalStateException("the program does not lex");
+        return sink.tokens;
+    }
+
+    static long parse(Lexer lexer, long bytes) throws Exception
+    {
+        LalrParser parser = new LalrParser(lexer, (int)(bytes / 8));
+        if (parser.parse() != 0)
+            throw new IllegalStateException("the program does not parse, at " + parser.lineno + ":" + parser.column);
+        return parser.ast.size();
+    }
+
+    interface Open
+    {
+        Lexer open() throws Exception;
+    }
+
+    // median and worst time to the first token, over many files opened one after another.
+    static void firstToken(String name, Open open) throws Exception
+    {
+        int n = 200;
+        long[] times = new long[n];
+        for (int i = 0; i < n; i++)
+        {
+            long t0 = System.nanoTime();
+            Lexer lexer = open.open();
+            lexer.next();
+            times[i] = System.nanoTime() - t0;
+            if (lexer instanceof PipelinedLexer)
+                ((PipelinedLexer)lexer).close();
+        }
+        java.util.Arrays.sort(times);
+        System.out.printf("first token, %-20s %8.1f us median %8.1f us max%n", name, times[n / 2] / 1e3, times[n - 1] / 1e3);
+    }
+}
@@ -0,0 +1,206 @@
+// load generator for Server: many connections, each sending requests of a few lines and timing every response.
+// each connection keeps --pipeline requests outstanding, and sends the next one as soon as a response comes in.
+// without --address a Server is started in this JVM on a free port, with --threads selector loops.
+//
+//   ./bench.sh -c ServerLoad [--address 7070 | /tmp/minc.sock] [--connections 1000] [--requests 100] [--pipeline 1]
+//                            [--lines 4] [--rounds 5] [--threads 1] [--table]
+public class ServerLoad
+{
+    static final class Client
+    {
+        java.nio.channels.SocketChannel channel;
+        java.nio.ByteBuffer in  = java.nio.ByteBuffer.allocate(1 << 14);
+        java.nio.ByteBuffer out = java.nio.ByteBuffer.allocate(1 << 14);
+        long[] sent;            // send time of the outstanding requests, oldest at head
+        int    head, outstanding, requested, answered;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        String  address     = null;
+        int     connections = 1000;
+        int     requests    = 100;
+        int     pipeline    = 1;
+        int     lines       = 4;
+        int     rounds      = 5;
+        Driver  settings    = new Driver();
+        settings.threads = 1;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--address"     : address = args[++i]; break;
+                case "--connections" : connections = Integer.parseInt(args[++i]); break;
+                case "--requests"    : requests = Integer.parseInt(args[++i]); break;
+                case "--pipeline"    : pipeline = Integer.parseInt(args[++i]); break;
+                case "--lines"       : lines = Integer.parseInt(args[++i]); break;
+                case "--rounds"      : rounds = Integer.parseInt(args[++i]); break;
+                case "--threads"     : settings.threads = Integer.parseInt(args[++i]); break;
+                case "--table"       : settings.table = true; break;
+                default :
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        Server server = null;
+        java.net.SocketAddress target;
+        if (address == null)
+        {
+            server = new Server(settings, "0");
+            target = server.address();
+            Server s = server;
+            Thread t = new Thread(() -> {
+                try
+                {
+                    s.run();
+                }
+                catch (Exception e)
+                {
+                    e.printStackTrace();
+                }
+            }, "minc-server-accept");
+            t.setDaemon(true);
+            t.start();
+        }
+        else
+        {
+            target = Server.address(address);
+        }
+
+        // a few hundred different requests, every one free of lexical errors
+        java.util.Random random = new java.util.Random(470);
+        byte[][] frames = new byte[256][];
+        long bytes = 0;
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < frames.length; i++)
+        {
+            b.setLength(0);
+            for (int l = 0; l < lines; l++)
+            {
+                Corpus.line(b, Corpus.FLAVOURS[random.nextInt(Corpus.FLAVOURS.length)], random);
+                b.append('\n');
+            }
+            byte[] source = b.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            frames[i] = java.nio.ByteBuffer.allocate(4 + source.length).putInt(source.length).put(source).array();
+            bytes += source.length;
+        }
+        System.out.printf("%s, %d connections, %d requests each, %d outstanding, %.1f bytes a request%n",
+                          target, connections, requests, pipeline, (double)bytes / frames.length);
+
+        java.nio.channels.Selector selector = java.nio.channels.Selector.open();
+        Client[] clients = new Client[connections];
+        for (int i = 0; i < connections; i++)
+        {
+            Client c = new Client();
+            c.channel = Server.open(target);
+            c.channel.connect(target);
+            if (!Server.isUnix(target))
+                c.channel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+            c.channel.configureBlocking(false);
+            c.channel.register(selector, java.nio.channels.SelectionKey.OP_READ, c);
+            c.sent = new long[pipeline];
+            clients[i] = c;
+        }
+
+        long[] latencies = new long[connections * requests];
+        for (int round = 0; round < rounds; round++)
+        {
+            int recorded = 0, failed = 0;
+            long t0 = System.nanoTime();
+            for (Client c : clients)
+            {
+                c.requested = c.answered = c.outstanding = c.head = 0;
+                while (c.outstanding < pipeline && c.requested < requests)
+                    send(c, frames[random.nextInt(frames.length)], pipeline);
+                flush(c, selector);
+            }
+            while (recorded < latencies.length)
+            {
+                selector.select();
+                java.util.Iterator<java.nio.channels.SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    java.nio.channels.SelectionKey key = keys.next();
+                    keys.remove();
+                    Client c = (Client)key.attachment();
+                    if (key.isWritable())
+                        flush(c, selector);
+                    if (!key.isReadable())
+                        continue;
+                    if (c.channel.read(c.in) < 0)
+                        throw new java.io.IOException("the server closed a connection");
+                    c.in.flip();
+                    long now = System.nanoTime();
+                    while (c.in.remaining() >= 4 && c.in.remaining() >= 4 + c.in.getInt(c.in.position()))
+                    {
+                        int length = c.in.getInt();
+                        if (c.in.get(c.in.position()) != 0)
+                            failed++;
+                        c.in.position(c.in.position() + length);
+                        latencies[recorded++] = now - c.sent[c.head];
+                        c.head = (c.head + 1) % pipeline;
+                        c.outstanding--;
+                        c.answered++;
+                        if (c.requested < requests)
+                            send(c, frames[random.nextInt(frames.length)], pipeline);
+                    }
+                    c.in.compact();
+                    if (c.in.position() >= 4 && c.in.getInt(0) + 4 > c.in.capacity())
+                    {
+                        java.nio.ByteBuffer grown = java.nio.ByteBuffer.allocate(c.in.getInt(0) + 4);
+                        c.in.flip();
+                        grown.put(c.in);
+                        c.in = grown;
+                    }
+                    flush(c, selector);
+                }
+            }
+            double seconds = (System.nanoTime() - t0) / 1e9;
+            java.util.Arrays.sort(latencies);
+            System.out.printf("round %d: %d requests in %.3f s, %.0f requests/s, latency p50 %d us, p90 %d us, p99 %d us, p99.9 %d us, max %d us%s%n",
+                              round, recorded, seconds, recorded / seconds,
+                              percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                              percentile(latencies, 0.999), latencies[latencies.length - 1] / 1000,
+                              failed > 0 ? ", " + failed + " lexical errors" : "");
+        }
+        for (Client c : clients)
+            c.channel.close();
+        if (server != null)
+        {
+            System.out.println(server);
+            server.close();
+        }
+    }
+
+    static void send(Client c, byte[] frame, int pipeline)
+    {
+        if (c.out.remaining() < frame.length)
+        {
+            java.nio.ByteBuffer grown = java.nio.ByteBuffer.allocate(c.out.capacity() * 2 + frame.length);
+            c.out.flip();
+            grown.put(c.out);
+            c.out = grown;
+        }
+        c.out.put(frame);
+        c.sent[(c.head + c.outstanding) % pipeline] = System.nanoTime();
+        c.outstanding++;
+        c.requested++;
+    }
+
+    static void flush(Client c, java.nio.channels.Selector selector) throws Exception
+    {
+        c.out.flip();
+        c.channel.write(c.out);
+        c.out.compact();
+        int ops = java.nio.channels.SelectionKey.OP_READ | (c.out.position() > 0 ? java.nio.channels.SelectionKey.OP_WRITE : 0);
+        java.nio.channels.SelectionKey key = c.channel.keyFor(selector);
+        if (key.interestOps() != ops)
+            key.interestOps(ops);
+    }
+
+    static long percentile(long[] sorted, double p)
+    {
+        return sorted[Math.min(sorted.length - 1, (int)Math.ceil(p * sorted.length) - 1)] / 1000;
+    }
+}
@@ -0,0 +1,95 @@
+// throughput of many small inputs: a new Compiler for every snippet, as Program does for every file,
+// against one Parser reset to each snippet and a LexerPool. the snippets are a few lines each,
+// about the size of test1.minc, so building the lexer costs more than lexing.
+//
+//   ./bench.sh -c SnippetBench [--snippets 10000] [--lines 4] [--table]
+public class SnippetBench
+{
+    public static void main(String[] args) throws Exception
+    {
+        int     count = 10000;
+        int     lines = 4;
+        boolean table = false;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--snippets"   : count = Integer.parseInt(args[++i]); break;
+                case "--lines"      : lines = Integer.parseInt(args[++i]); break;
+                case "--table"      : table = true; break;
+                case "--warmup"     : Bench.warmups = Integer.parseInt(args[++i]); break;
+                case "--iterations" : Bench.iterations = Integer.parseInt(args[++i]); break;
+                default :
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        java.util.Random random = new java.util.Random(470);
+        String[] snippets = new String[count];
+        long bytes = 0;
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < count; i++)
+        {
+            b.setLength(0);
+            for (int l = 0; l < lines; l++)
+            {
+                Corpus.line(b, Corpus.FLAVOURS[random.nextInt(Corpus.FLAVOURS.length)], random);
+                b.append('\n');
+            }
+            snippets[i] = b.toString();
+            bytes += snippets[i].length();
+        }
+        System.out.printf("%d snippets of %d lines, %.1f chars a snippet%n", count, lines, (double)bytes / count);
+
+        final boolean tableLexer = table;
+        NullSink sink = new NullSink();
+        Parser parser = new Parser(tableLexer ? new TableLexer(new TextReader("", 0), null) : new Lexer(new TextReader("", 0), null), null);
+        parser.sink = sink;
+        LexerPool pool = new LexerPool(4, tableLexer, Lexer.DEFAULT_BLOCK_SIZE);
+        LexerPool small = new LexerPool(4, tableLexer, 1024);
+
+        Bench.measure("new Compiler per snippet", bytes, () -> {
+            sink.tokens = 0;
+            for (String s : snippets)
+            {
+                Lexer lexer = tableLexer ? new TableLexer(new java.io.StringReader(s), null) : new Lexer(new java.io.StringReader(s), null);
+                new Compiler(lexer).Compile(sink);
+            }
+            return sink.tokens;
+        });
+        Bench.measure("Parser.reset per snippet", bytes, () -> {
+            sink.tokens = 0;
+            for (String s : snippets)
+            {
+                parser.reset(s);
+                parser.yyparse();
+            }
+            return sink.tokens;
+        });
+        Bench.measure("LexerPool.compile", bytes, () -> {
+            sink.tokens = 0;
+            for (String s : snippets)
+                pool.compile(s, sink);
+            return sink.tokens;
+        });
+        Bench.measure("LexerPool.compile, 1K blocks", bytes, () -> {
+            sink.tokens = 0;
+            for (String s : snippets)
+                small.compile(s, sink);
+            return sink.tokens;
+        });
+        Bench.measure("LexerPool acquire, next()", bytes, () -> {
+            long tokens = 0;
+            for (String s : snippets)
+            {
+                Lexer lexer = pool.acquire(s);
+                while (lexer.next() > 0)
+                    tokens++;
+                pool.release(lexer);
+            }
+            return tokens;
+        });
+        System.out.println(pool);
+    }
+}
@@ -0,0 +1,95 @@
+// startup of Program on small files, a fresh JVM for every run the way run.bat starts them: the time from starting the
+// JVM to the first token on its stdout, and until it has exited. the classes are loaded from the class directory like
+// run.bat does, from the jar minc.sh builds, and from the jar with its class data sharing archive. Program prints the
+// tokens of a file when the file is done, so the first token comes with the rest of the first file.
+// the last row lexes all the files in one JVM.
+//
+//   ./minc.sh -h > /dev/null      builds out/cds/minc.jar and out/cds/minc.jsa
+//   ./bench.sh -c StartupBench [--runs 21] [--files test1.minc,test2.minc] [--options "--table"]
+public class StartupBench
+{
+    public static void main(String[] args) throws Exception
+    {
+        int      runs    = 21;
+        String[] files   = {"test1.minc", "test2.minc", "test3.minc", "test4.minc", "test5.minc", "test6.minc", "test7.minc", "test8.minc"};
+        String[] options = {};
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--runs"    : runs = Integer.parseInt(args[++i]); break;
+                case "--files"   : files = args[++i].split(","); break;
+                case "--options" : options = args[++i].trim().split("\\s+"); break;
+                default :
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+        java.io.File jar = new java.io.File("out/cds/minc.jar");
+        java.io.File archive = new java.io.File("out/cds/minc.jsa");
+        if (!jar.isFile() || !archive.isFile())
+        {
+            System.err.println("no " + jar + " or " + archive + ", run ./minc.sh -h first");
+            System.exit(2);
+        }
+        String java = System.getProperty("java.home") + "/bin/java";
+        String[][] jvms = {
+            {java, "-cp", "out/cds/classes"},
+            {java, "-cp", jar.getPath()},
+            {java, "-Xshare:auto", "-XX:SharedArchiveFile=" + archive, "-cp", jar.getPath()},
+        };
+        String[] names = {"classes", "jar", "jar + archive"};
+
+        System.out.printf("%-14s %-14s %12s %12s   (median of %d runs)%n", "", "", "first token", "total", runs);
+        for (int f = 0; f <= files.length; f++)
+        {
+            String[] inputs = f < files.length ? new String[] {files[f]} : files;
+            String name = f < files.length ? files[f] : "all " + files.length;
+            // the variants take turns, so whatever else the machine does falls on all of them alike
+            long[][] first = new long[jvms.length][runs];
+            long[][] total = new long[jvms.length][runs];
+            for (int r = 0; r < runs; r++)
+            {
+                for (int v = 0; v < jvms.length; v++)
+                {
+                    long[] t = launch(jvms[v], options, inputs);
+                    first[v][r] = t[0];
+                    total[v][r] = t[1];
+                }
+            }
+            for (int v = 0; v < jvms.length; v++)
+                System.out.printf("%-14s %-14s %9.1f ms %9.1f ms%n", v == 0 ? name : "", names[v], median(first[v]) / 1e6, median(total[v]) / 1e6);
+        }
+    }
+
+    // nanoseconds from starting the JVM to the first byte of its output, and to its exit.
+    static long[] launch(String[] jvm, String[] options, String[] inputs) throws Exception
+    {
+        java.util.List<String> command = new java.util.ArrayList<>(java.util.Arrays.asList(jvm));
+        command.add("Program");
+        for (String o : options)
+        {
+            if (!o.isEmpty())
+                command.add(o);
+        }
+        command.addAll(java.util.Arrays.asList(inputs));
+        ProcessBuilder builder = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD);
+        long t0 = System.nanoTime();
+        Process p = builder.start();
+        java.io.InputStream out = p.getInputStream();
+        long first = out.read() < 0 ? -1 : System.nanoTime() - t0;
+        byte[] drain = new byte[1 << 16];
+        while (out.read(drain) >= 0)
+            ;
+        p.waitFor();
+        long total = System.nanoTime() - t0;
+        return new long[] {first < 0 ? total : first, total};
+    }
+
+    static long median(long[] times)
+    {
+        long[] sorted = times.clone();
+        java.util.Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
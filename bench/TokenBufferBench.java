@@ -0,0 +1,65 @@
+// memory and time of keeping every token of a file: a list of the ParserVal objects yylex() makes,
+// against a TokenBuffer, and one lexed by an OffsetLexer that keeps a LineIndex instead of the line and column of every
+// token. the list is measured as the heap still in use after a GC while it is held,
+// the TokenBuffers by their footprintBytes(), which is exact where the heap after a GC is not.
+//
+//   ./bench.sh -c TokenBufferBench [--flavours identifier,...] [--size 16m]
+public class TokenBufferBench
+{
+    public static void main(String[] args) throws Exception
+    {
+        String[] flavours = {"identifier", "number", "operator"};
+        long size = 16 << 20;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--flavours"   : flavours = args[++i].split(","); break;
+                case "--size"       : size = Bench.parseSize(args[++i]); break;
+                case "--warmup"     : Bench.warmups    = Integer.parseInt(args[++i]); break;
+                case "--iterations" : Bench.iterations = Integer.parseInt(args[++i]); break;
+                default :
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        for (String flavour : flavours)
+        {
+            java.io.File f = Corpus.file(flavour, size);
+            Bench.measure("ParserVal list " + flavour, f.length(), () -> values(f).size());
+            Bench.measure("TokenBuffer    " + flavour, f.length(), () -> TokenBuffer.lex(f.toPath(), false).size());
+            Bench.measure("TokenBuffer offsets " + flavour, f.length(), () -> TokenBuffer.lexOffsets(f.toPath()).size());
+
+            long before = used();
+            java.util.List<ParserVal> values = values(f);
+            long list = used() - before;
+            TokenBuffer tokens = TokenBuffer.lex(f.toPath(), false);
+            long buffer = tokens.footprintBytes();
+            tokens.trim();
+            System.out.printf("retained %-10s  ParserVal list %6.1f B/token, TokenBuffer %5.1f B/token, after trim() %5.1f B/token (%d tokens)%n",
+                              flavour, (double)list / values.size(), (double)buffer / tokens.size(), (double)tokens.footprintBytes() / tokens.size(), tokens.size());
+            TokenBuffer offsets = TokenBuffer.lexOffsets(f.toPath());
+            offsets.trim();
+            System.out.printf("retained %-10s  TokenBuffer offsets after trim() %5.1f B/token (%d lines)%n",
+                              flavour, (double)offsets.footprintBytes() / offsets.size(), offsets.positions.lines());
+        }
+    }
+
+    static java.util.List<ParserVal> values(java.io.File f) throws Exception
+    {
+        Parser parser = new Parser(new java.io.FileReader(f), null);
+        java.util.List<ParserVal> values = new java.util.ArrayList<>();
+        while (parser.lexer.yylex() > 0)
+            values.add(parser.yylval);
+        return values;
+    }
+
+    static long used()
+    {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime r = Runtime.getRuntime();
+        return r.totalMemory() - r.freeMemory();
+    }
+}
@@ -0,0 +1,31 @@
+package minc.jmh;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// the bytes and tokens a benchmark lexed, which JMH reports next to the operations as rates: bytes/s and tokens/s
+// under Mode.Throughput with seconds as the time unit.
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Counters
+{
+    public long bytes;
+    public long tokens;
+
+    @Setup(Level.Iteration)
+    public void clear()
+    {
+        bytes  = 0;
+        tokens = 0;
+    }
+
+    long add(long bytes, long tokens)
+    {
+        this.bytes  += bytes;
+        this.tokens += tokens;
+        return tokens;
+    }
+}
@@ -0,0 +1,58 @@
+package minc.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// the engines of bench/LexerBench under JMH, over a bench/corpus file of each flavour and size read through a
+// FileReader or mapped: lexer, table and offsets call next() to the end, yylex makes a ParserVal of every token, parser
+// compiles into a NullSink and text prints into a TextSink. an operation is one whole file, its result the number of
+// tokens. next to the files a second, JMH reports the bytes and tokens a second from Counters. TestsBenchmark does the
+// same over test*.minc.
+// every parameter together is 360 benchmarks over 5 GB of corpus, which takes hours. pick some with -p:
+//   java -jar jmh/target/benchmarks.jar LexerBenchmark -p engine=lexer,table -p size=1k,1m,1g -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class LexerBenchmark
+{
+    @Param({"identifier", "number", "comment", "operator", "whitespace"})
+    String flavour;
+
+    @Param({"1k", "64k", "1m", "16m", "256m", "1g"})
+    String size;
+
+    @Param({"lexer", "table", "offsets", "yylex", "parser", "text"})
+    String engine;
+
+    @Param({"false", "true"})
+    boolean mapped;
+
+    java.io.File file;
+    long         bytes;
+
+    @Setup
+    public void setup() throws Throwable
+    {
+        file  = Minc.corpus(flavour, size);
+        bytes = file.length();
+    }
+
+    @Benchmark
+    public long run(Counters counters) throws Throwable
+    {
+        return counters.add(bytes, (long)Minc.LEXER_BENCH_RUN.invokeExact(engine, file, mapped));
+    }
+}
@@ -0,0 +1,55 @@
+package minc.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+// the compiler and bench/ are in the default package, which code in a package cannot name, and JMH only takes
+// benchmarks in a package. the methods the benchmarks call are looked up once into constants, which the JIT inlines
+// like direct calls. the classes of the default package are passed as Object.
+final class Minc
+{
+    static final MethodHandle PARSE_SIZE      = find("Bench", "parseSize", String.class);
+    static final MethodHandle CORPUS_FILE     = find("Corpus", "file", String.class, long.class);
+    static final MethodHandle LEXER_BENCH_RUN = find("LexerBench", "run", String.class, java.io.File.class, boolean.class);
+    static final MethodHandle VALUES          = find("TokenBufferBench", "values", java.io.File.class);
+    static final MethodHandle LEX             = find("TokenBuffer", "lex", java.nio.file.Path.class, boolean.class);
+    static final MethodHandle LEX_OFFSETS     = find("TokenBuffer", "lexOffsets", java.nio.file.Path.class);
+    static final MethodHandle SIZE            = find("TokenBuffer", "size");
+
+    static MethodHandle find(String className, String name, Class<?>... parameters)
+    {
+        try
+        {
+            java.lang.reflect.Method method = Class.forName(className).getDeclaredMethod(name, parameters);
+            method.setAccessible(true);     // the bench methods are package-private
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            return handle.asType(erase(handle.type()));
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    static MethodType erase(MethodType type)
+    {
+        for (int i = 0; i < type.parameterCount(); i++)
+        {
+            if (unnamed(type.parameterType(i)))
+                type = type.changeParameterType(i, Object.class);
+        }
+        return unnamed(type.returnType()) ? type.changeReturnType(Object.class) : type;
+    }
+
+    static boolean unnamed(Class<?> c)
+    {
+        return !c.isPrimitive() && !c.isArray() && c.getPackageName().isEmpty();
+    }
+
+    static java.io.File corpus(String flavour, String size) throws Throwable
+    {
+        long bytes = (long)PARSE_SIZE.invokeExact(size);
+        return (java.io.File)CORPUS_FILE.invokeExact(flavour, bytes);
+    }
+}
@@ -0,0 +1,58 @@
+package minc.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// the engines of LexerBenchmark over the tests, test1.minc to test8.minc in the working directory: an operation lexes
+// every one of them, the way Program does without arguments. the files are a few dozen bytes each, so this measures
+// what it costs to start on a file more than what lexing it costs.
+//   java -jar jmh/target/benchmarks.jar TestsBenchmark -p engine=lexer,table
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class TestsBenchmark
+{
+    @Param({"lexer", "table", "offsets", "yylex", "parser", "text"})
+    String engine;
+
+    @Param({"false", "true"})
+    boolean mapped;
+
+    java.io.File[] files;
+    long           bytes;
+
+    @Setup
+    public void setup()
+    {
+        java.util.List<java.io.File> tests = new java.util.ArrayList<>();
+        for (int i = 1; new java.io.File("test" + i + ".minc").isFile(); i++)
+            tests.add(new java.io.File("test" + i + ".minc"));
+        if (tests.isEmpty())
+            throw new IllegalStateException("no test1.minc in " + new java.io.File("").getAbsolutePath() + ", run from the top of the tree");
+        files = tests.toArray(new java.io.File[0]);
+        for (java.io.File f : files)
+            bytes += f.length();
+    }
+
+    @Benchmark
+    public long run(Counters counters) throws Throwable
+    {
+        long tokens = 0;
+        for (java.io.File f : files)
+            tokens += (long)Minc.LEXER_BENCH_RUN.invokeExact(engine, f, mapped);
+        return counters.add(bytes, tokens);
+    }
+}
@@ -0,0 +1,61 @@
+package minc.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// the rows of bench/TokenBufferBench under JMH: keeping every token of a file as a list of ParserVal, in a
+// TokenBuffer, and in a TokenBuffer lexed by an OffsetLexer. -prof gc gives what each allocates per file; what they
+// retain is printed by TokenBufferBench, which JMH has no measure for.
+//   java -jar jmh/target/benchmarks.jar TokenBufferBenchmark -p flavour=operator -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})   // the ParserVal list of an operator file needs more than 1g
+public class TokenBufferBenchmark
+{
+    @Param({"identifier", "number", "operator"})
+    String flavour;
+
+    @Param({"16m"})
+    String size;
+
+    java.io.File file;
+
+    @Setup
+    public void setup() throws Throwable
+    {
+        file = Minc.corpus(flavour, size);
+    }
+
+    @Benchmark
+    public int parserValList() throws Throwable
+    {
+        return ((java.util.List<?>)Minc.VALUES.invokeExact(file)).size();
+    }
+
+    @Benchmark
+    public int tokenBuffer() throws Throwable
+    {
+        Object tokens = (Object)Minc.LEX.invokeExact(file.toPath(), false);
+        return (int)Minc.SIZE.invokeExact(tokens);
+    }
+
+    @Benchmark
+    public int tokenBufferOffsets() throws Throwable
+    {
+        Object tokens = (Object)Minc.LEX_OFFSETS.invokeExact(file.toPath());
+        return (int)Minc.SIZE.invokeExact(tokens);
+    }
+}
@@ -0,0 +1,43 @@
+#!/bin/sh
+# run Program with an Application Class Data Sharing archive, for the short runs where starting the JVM, loading the
+# classes and interpreting the lexer before it is compiled is most of the time. the classes are mapped from the
+# archive already parsed and verified, instead of being read from the jar one by one.
+#   ./minc.sh [Program options] [file | directory | glob] ...
+#   MINC_CDS=off ./minc.sh ...      the same, without the archive
+#
+# the first run builds out/cds/minc.jar and the archive, out/cds/minc.jsa, and so does the first run after a source
+# has changed. the archive holds the classes loaded by training runs over the tests, plain, with --table, --ast and
+# --errors, so the tables of TableLexer and LalrParser are generated by archived code as well. needs JDK 10 or later,
+# --server on a Unix domain socket 16 or later. a JVM that cannot use the archive runs without it. JAVA_OPTS go to
+# the JVM, like -XX:TieredStopAtLevel=1, which starts faster still, but lexes large files about a third slower.
+set -e
+dir=$(cd "$(dirname "$0")" && pwd)
+out=$dir/out/cds
+jar=$out/minc.jar
+archive=$out/minc.jsa
+
+if [ ! -f "$jar" ] || [ -n "$(find "$dir" -maxdepth 1 -name '*.java' -newer "$jar")" ]; then
+    rm -rf "$out"
+    mkdir -p "$out/classes"
+    javac -d "$out/classes" "$dir"/*.java
+    jar cf "$jar" -C "$out/classes" .
+fi
+
+if [ ! -f "$archive" ] && [ ! -f "$out/dump.log" ]; then    # tried once for every build, even when it failed
+    # the classes each training run loads, in the order they were loaded, merged into one list. the tests have lexical
+    # errors, so Program exits with 1.
+    for opts in "" "--table" "--ast" "--errors 5"; do
+        (cd "$dir" && java -XX:DumpLoadedClassList="$out/run.lst" -cp "$jar" Program $opts > /dev/null) || true
+        cat "$out/run.lst" >> "$out/runs.lst"
+    done
+    printf 'Program\nCompiler\nParser\nLexer\nParserVal\n' >> "$out/runs.lst"
+    awk '!seen[$0]++' "$out/runs.lst" > "$out/classes.lst"
+    java -Xshare:dump -XX:SharedClassListFile="$out/classes.lst" -XX:SharedArchiveFile="$archive" -cp "$jar" > "$out/dump.log" 2>&1 \
+        || echo "minc.sh: could not dump the class data sharing archive, see $out/dump.log" >&2
+    rm -f "$out/run.lst" "$out/runs.lst"
+fi
+
+if [ "$MINC_CDS" != "off" ] && [ -f "$archive" ]; then
+    exec java -Xshare:auto -XX:SharedArchiveFile="$archive" $JAVA_OPTS -cp "$jar" Program "$@"
+fi
+exec java $JAVA_OPTS -cp "$jar" Program "$@"